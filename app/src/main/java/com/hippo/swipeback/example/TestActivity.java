@@ -83,7 +83,7 @@ public class TestActivity extends SwipeBackActivity {
 
             @Override
             public void onFinish() {}
-        });
+        }, SwipeBackLayout.EVENT_SWIPE | SwipeBackLayout.EVENT_STATE, 0.01f, true);
 
         findViewById(R.id.swipe_left).setOnClickListener(new View.OnClickListener() {
             @Override
@@ -0,0 +1,435 @@
+/*
+ * Copyright 2017 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hippo.swipeback;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput and per-event latency of {@link DragGesture} for recorded-like touch streams.
+ * Each invocation feeds one event, streams are replayed in a loop. The gesture is aborted
+ * each time the stream starts over, so every replay begins idle.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GestureBenchmark {
+
+    static final int WIDTH = 1080;
+    static final int HEIGHT = 1920;
+    static final int TOUCH_SLOP = 24;
+    static final int EDGE_SIZE = 53;
+    static final int FRAME_TIME = 8; // ms, touch sample interval
+
+    public enum Stream {
+        /** A tap in the middle with jitter, nothing is captured */
+        IDLE,
+        /** A vertical scroll from the left edge, which is never intercepted */
+        EDGE_TOUCHED,
+        /** A swipe from the left edge, dragged after the touch slop */
+        DRAGGING,
+        /** A swipe with two pointers and batched historical samples */
+        MULTI_POINTER,
+    }
+
+    @Param
+    public Stream stream;
+
+    private TargetHost mHost;
+    private DragGesture<Target> mGesture;
+    private TouchSamples[] mEvents;
+    private int mIndex;
+    // Whether intercept() has intercepted the current replay
+    private boolean mIntercepted;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        mHost = new TargetHost();
+        mGesture = mHost.newGesture();
+        mEvents = buildStream(stream);
+        mIndex = 0;
+        mIntercepted = false;
+    }
+
+    /**
+     * Feeds events like a ViewGroup does: to shouldInterceptTouchEvent() until it intercepts,
+     * then to processTouchEvent() for the rest of the gesture.
+     */
+    @Benchmark
+    public boolean intercept() {
+        final TouchSamples event = nextEvent();
+        if (mIntercepted) {
+            mGesture.processTouchEvent(event);
+            return true;
+        }
+        return mIntercepted = mGesture.shouldInterceptTouchEvent(event);
+    }
+
+    @Benchmark
+    public int process() {
+        mGesture.processTouchEvent(nextEvent());
+        return mHost.target.left;
+    }
+
+    private TouchSamples nextEvent() {
+        if (mIndex == mEvents.length) {
+            mGesture.abort();
+            mHost.target.left = 0;
+            mIntercepted = false;
+            mIndex = 0;
+        }
+        return mEvents[mIndex++];
+    }
+
+    static TouchSamples[] buildStream(Stream stream) {
+        final List<TouchSamples> events = new ArrayList<>();
+        long time = 0;
+        switch (stream) {
+            case IDLE: {
+                events.add(single(TouchSamples.ACTION_DOWN, 540, 960, time));
+                for (int i = 1; i <= 30; i++) {
+                    time += FRAME_TIME;
+                    events.add(single(TouchSamples.ACTION_MOVE, 540 + i % 3, 960 - i % 2, time));
+                }
+                events.add(single(TouchSamples.ACTION_UP, 540, 960, time + FRAME_TIME));
+                break;
+            }
+            case EDGE_TOUCHED: {
+                events.add(single(TouchSamples.ACTION_DOWN, 10, 1500, time));
+                for (int i = 1; i <= 60; i++) {
+                    time += FRAME_TIME;
+                    events.add(single(TouchSamples.ACTION_MOVE, 10 + i % 4, 1500 - 15 * i, time));
+                }
+                events.add(single(TouchSamples.ACTION_UP, 10, 600, time + FRAME_TIME));
+                break;
+            }
+            case DRAGGING: {
+                events.add(single(TouchSamples.ACTION_DOWN, 10, 960, time));
+                for (int i = 1; i <= 60; i++) {
+                    time += FRAME_TIME;
+                    events.add(single(TouchSamples.ACTION_MOVE, 10 + 12 * i, 960 + i % 5, time));
+                }
+                events.add(single(TouchSamples.ACTION_UP, 730, 960, time + FRAME_TIME));
+                break;
+            }
+            case MULTI_POINTER: {
+                events.add(single(TouchSamples.ACTION_DOWN, 10, 960, time));
+                time += FRAME_TIME;
+                events.add(pair(TouchSamples.ACTION_POINTER_DOWN, 1, 10, 10, 500, time));
+                int x = 10;
+                for (int i = 1; i <= 30; i++) {
+                    // Three samples per event, two of them historical
+                    final TouchSamples event = new TouchSamples();
+                    event.reset(TouchSamples.ACTION_MOVE, 0, 2, 2);
+                    event.setPointerId(0, 0);
+                    event.setPointerId(1, 1);
+                    for (int h = 0; h <= 2; h++) {
+                        time += FRAME_TIME / 2;
+                        x += 8;
+                        event.setTime(h, time);
+                        event.setPosition(h, 0, x, 960);
+                        event.setPosition(h, 1, x - 10, 500 + h);
+                    }
+                    events.add(event);
+                }
+                time += FRAME_TIME;
+                events.add(pair(TouchSamples.ACTION_POINTER_UP, 1, x, x - 10, 500, time));
+                events.add(single(TouchSamples.ACTION_UP, x, 960, time + FRAME_TIME));
+                break;
+            }
+        }
+        return events.toArray(new TouchSamples[events.size()]);
+    }
+
+    private static TouchSamples single(int action, float x, float y, long time) {
+        final TouchSamples event = new TouchSamples();
+        event.set(action, 0, x, y, time);
+        return event;
+    }
+
+    /**
+     * An event of pointer 0 at (x0, 960) and pointer 1 at (x1, y1).
+     */
+    private static TouchSamples pair(int action, int actionIndex, float x0, float x1, float y1,
+            long time) {
+        final TouchSamples event = new TouchSamples();
+        event.reset(action, actionIndex, 2, 0);
+        event.setPointerId(0, 0);
+        event.setPointerId(1, 1);
+        event.setTime(0, time);
+        event.setPosition(0, 0, x0, 960);
+        event.setPosition(0, 1, x1, y1);
+        return event;
+    }
+
+    static final class Target {
+        int left;
+    }
+
+    /**
+     * Hosts one full size target which is captured by pointers down on the left edge,
+     * like {@link SwipeBackLayout}. It jumps back when released, unless it settles.
+     */
+    static final class TargetHost implements DragGesture.Host<Target> {
+
+        final Target target = new Target();
+        final TargetScroller scroller = new TargetScroller(this);
+        // The frame time, advanced by benchmarks which settle
+        long time;
+        // Settle to it when released if not negative
+        int settleTo = -1;
+        private DragGesture<Target> mGesture;
+
+        DragGesture<Target> newGesture() {
+            mGesture = new DragGesture<>(this, scroller, TOUCH_SLOP, EDGE_SIZE, 150, 24000, 64);
+            mGesture.setEdgeTrackingEnabled(DragGesture.EDGE_LEFT);
+            return mGesture;
+        }
+
+        @Override
+        public int getWidth() {
+            return WIDTH;
+        }
+
+        @Override
+        public int getHeight() {
+            return HEIGHT;
+        }
+
+        @Override
+        public Target findTargetUnder(int x, int y) {
+            return isTargetUnder(target, x, y) ? target : null;
+        }
+
+        @Override
+        public boolean isTargetUnder(Target target, int x, int y) {
+            return x >= target.left && x < target.left + WIDTH && y >= 0 && y < HEIGHT;
+        }
+
+        @Override
+        public int getLeft(Target target) {
+            return target.left;
+        }
+
+        @Override
+        public int getTop(Target target) {
+            return 0;
+        }
+
+        @Override
+        public int getHorizontalDragRange(Target target) {
+            return WIDTH;
+        }
+
+        @Override
+        public int getVerticalDragRange(Target target) {
+            return 0;
+        }
+
+        @Override
+        public int clampHorizontal(Target target, int left, int dx) {
+            return Math.max(0, Math.min(left, WIDTH));
+        }
+
+        @Override
+        public int clampVertical(Target target, int top, int dy) {
+            return 0;
+        }
+
+        @Override
+        public boolean tryCapture(Target target, int pointerId) {
+            return mGesture.isEdgeTouched(DragGesture.EDGE_LEFT, pointerId);
+        }
+
+        @Override
+        public void onCaptured(Target target, int pointerId) {}
+
+        @Override
+        public void dragTarget(Target target, int left, int top, int dx, int dy) {
+            target.left = left;
+        }
+
+        @Override
+        public void moveTarget(Target target, int dx, int dy) {
+            target.left += dx;
+        }
+
+        @Override
+        public void onPositionChanged(Target target, int left, int top, int dx, int dy) {}
+
+        @Override
+        public void onReleased(Target target, float xvel, float yvel) {
+            if (settleTo >= 0) {
+                mGesture.settleCapturedAt(settleTo, 0);
+            } else {
+                target.left = 0;
+            }
+        }
+
+        @Override
+        public void onDragStateChanged(int state) {}
+
+        @Override
+        public void onEdgeTouched(int edgeFlags, int pointerId) {}
+
+        @Override
+        public boolean onEdgeLock(int edgeFlags) {
+            return false;
+        }
+
+        @Override
+        public void onEdgeDragStarted(int edgeFlags, int pointerId) {}
+
+        @Override
+        public void scheduleDragFrame() {}
+
+        @Override
+        public void cancelDragFrame() {}
+
+        @Override
+        public void scheduleIdle() {}
+
+        @Override
+        public void cancelIdle() {}
+
+        @Override
+        public long currentTimeMillis() {
+            return time;
+        }
+    }
+
+    /**
+     * Scrolls along the quintic curve of {@link ViewDragHelper} on the time of the host,
+     * like the platform scroller does on the frame time. Flings decelerate at a constant
+     * rate and stop at the bounds.
+     */
+    static final class TargetScroller implements DragGesture.Scroller {
+
+        // px/s^2, roughly what the platform scroller uses on a 420dpi screen
+        private static final float DECELERATION = 8000.0f;
+
+        private final TargetHost mHost;
+        private int mStartX;
+        private int mStartY;
+        private int mFinalX;
+        private int mFinalY;
+        private int mCurrX;
+        private int mCurrY;
+        private long mStartTime;
+        private int mDuration;
+        private boolean mFinished = true;
+        private boolean mFling;
+
+        TargetScroller(TargetHost host) {
+            mHost = host;
+        }
+
+        @Override
+        public void startScroll(int startX, int startY, int dx, int dy, int duration) {
+            mStartX = mCurrX = startX;
+            mStartY = mCurrY = startY;
+            mFinalX = startX + dx;
+            mFinalY = startY + dy;
+            mStartTime = mHost.time;
+            mDuration = duration;
+            mFinished = false;
+            mFling = false;
+        }
+
+        @Override
+        public void fling(int startX, int startY, int velocityX, int velocityY,
+                int minX, int maxX, int minY, int maxY) {
+            mStartX = mCurrX = startX;
+            mStartY = mCurrY = startY;
+            mFinalX = flingTo(startX, velocityX, minX, maxX);
+            mFinalY = flingTo(startY, velocityY, minY, maxY);
+            mStartTime = mHost.time;
+            final float velocity = (float) Math.hypot(velocityX, velocityY);
+            mDuration = Math.max(1, Math.round(1000.0f * velocity / DECELERATION));
+            mFinished = false;
+            mFling = true;
+        }
+
+        private static int flingTo(int start, int velocity, int min, int max) {
+            final float distance = (float) velocity * Math.abs(velocity) / (2.0f * DECELERATION);
+            return Math.max(min, Math.min(start + Math.round(distance), max));
+        }
+
+        @Override
+        public boolean computeScrollOffset() {
+            if (mFinished) {
+                return false;
+            }
+            final long elapsed = mHost.time - mStartTime;
+            if (elapsed < mDuration) {
+                float t = (float) elapsed / mDuration - 1.0f;
+                t = mFling ? 1.0f - t * t : t * t * t * t * t + 1.0f;
+                mCurrX = mStartX + Math.round(t * (mFinalX - mStartX));
+                mCurrY = mStartY + Math.round(t * (mFinalY - mStartY));
+            } else {
+                mCurrX = mFinalX;
+                mCurrY = mFinalY;
+                mFinished = true;
+            }
+            return true;
+        }
+
+        @Override
+        public int getCurrX() {
+            return mCurrX;
+        }
+
+        @Override
+        public int getCurrY() {
+            return mCurrY;
+        }
+
+        @Override
+        public int getFinalX() {
+            return mFinalX;
+        }
+
+        @Override
+        public int getFinalY() {
+            return mFinalY;
+        }
+
+        @Override
+        public void abortAnimation() {
+            mCurrX = mFinalX;
+            mCurrY = mFinalY;
+            mFinished = true;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2017 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hippo.swipeback;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Dispatch of {@link SwipeListenerList} with different numbers of listeners.
+ * Listeners of several classes are mixed, like in an app, so the dispatch call sites
+ * stay megamorphic instead of inlining a single implementation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ListenerDispatchBenchmark {
+
+    // Progress change of one move event
+    private static final float PERCENT_STEP = 0.0037f;
+    // Number of listener classes, see newListener()
+    private static final int LISTENER_CLASSES = 4;
+
+    @Param({"1", "5", "20", "50"})
+    public int listenerCount;
+
+    private SwipeListenerList mListeners;
+    private SwipeListenerList mSteppedListeners;
+    private BaseListener mLast;
+    private BaseListener mSteppedLast;
+    private float mPercent;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        mListeners = new SwipeListenerList();
+        mSteppedListeners = new SwipeListenerList();
+        for (int i = 0; i < listenerCount; i++) {
+            mLast = newListener(i);
+            mListeners.add(mLast, SwipeListenerList.EVENT_ALL);
+            mSteppedLast = newListener(i);
+            mSteppedListeners.add(mSteppedLast, SwipeListenerList.EVENT_ALL, 0.01f, false);
+        }
+
+        // Fewer listeners than classes would leave the call sites monomorphic,
+        // so let them see every class before measuring.
+        final SwipeListenerList all = new SwipeListenerList();
+        for (int i = 0; i < LISTENER_CLASSES; i++) {
+            all.add(newListener(i), SwipeListenerList.EVENT_ALL);
+            all.add(newListener(i), SwipeListenerList.EVENT_ALL, 0.01f, false);
+        }
+        for (int i = 0; i < 10000; i++) {
+            all.dispatchSwipe(nextPercent());
+            all.dispatchStateChange(DragGesture.EDGE_LEFT, DragGesture.STATE_DRAGGING);
+        }
+        mPercent = 0;
+    }
+
+    private static BaseListener newListener(int index) {
+        switch (index % LISTENER_CLASSES) {
+            default:
+            case 0:
+                return new CountingListener();
+            case 1:
+                return new ProgressListener();
+            case 2:
+                return new StateListener();
+            case 3:
+                return new FinishListener();
+        }
+    }
+
+    private float nextPercent() {
+        mPercent += PERCENT_STEP;
+        if (mPercent > 1) {
+            mPercent = 0;
+        }
+        return mPercent;
+    }
+
+    @Benchmark
+    public int dispatchSwipe() {
+        mListeners.dispatchSwipe(nextPercent());
+        return mLast.count;
+    }
+
+    @Benchmark
+    public int dispatchSwipeStepped() {
+        mSteppedListeners.dispatchSwipe(nextPercent());
+        return mSteppedLast.count;
+    }
+
+    @Benchmark
+    public int dispatchStateChange() {
+        mListeners.dispatchStateChange(DragGesture.EDGE_LEFT, DragGesture.STATE_DRAGGING);
+        return mLast.count;
+    }
+
+    private abstract static class BaseListener implements SwipeEventListener {
+        int count;
+    }
+
+    private static final class CountingListener extends BaseListener {
+
+        @Override
+        public void onSwipe(float percent) {
+            count++;
+        }
+
+        @Override
+        public void onStateChange(int edge, int state) {
+            count++;
+        }
+
+        @Override
+        public void onSwipeOverThreshold() {
+            count++;
+        }
+
+        @Override
+        public void onFinish() {
+            count++;
+        }
+    }
+
+    private static final class ProgressListener extends BaseListener {
+
+        float percent;
+
+        @Override
+        public void onSwipe(float percent) {
+            this.percent = percent;
+            count++;
+        }
+
+        @Override
+        public void onStateChange(int edge, int state) {}
+
+        @Override
+        public void onSwipeOverThreshold() {}
+
+        @Override
+        public void onFinish() {}
+    }
+
+    private static final class StateListener extends BaseListener {
+
+        int edge;
+        int state;
+
+        @Override
+        public void onSwipe(float percent) {}
+
+        @Override
+        public void onStateChange(int edge, int state) {
+            this.edge = edge;
+            this.state = state;
+            count++;
+        }
+
+        @Override
+        public void onSwipeOverThreshold() {}
+
+        @Override
+        public void onFinish() {}
+    }
+
+    private static final class FinishListener extends BaseListener {
+
+        boolean overThreshold;
+        boolean finished;
+
+        @Override
+        public void onSwipe(float percent) {
+            if (percent >= 1.0f) {
+                count++;
+            }
+        }
+
+        @Override
+        public void onStateChange(int edge, int state) {}
+
+        @Override
+        public void onSwipeOverThreshold() {
+            overThreshold = true;
+        }
+
+        @Override
+        public void onFinish() {
+            finished = true;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2017 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hippo.swipeback;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Settle math: the duration of scroller settling, and frames of scroller and spring settling
+ * stepped by {@link DragGesture#continueSettling(boolean)}. Each settle starts with
+ * a release, which is spread over its frames.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SettleBenchmark {
+
+    private static final int FRAME_TIME = 16; // ms
+    private static final int SPRING_DURATION = 300; // ms
+
+    // Distances left to settle, rotated to keep branches unpredictable
+    private static final int[] DISTANCES = {
+            -1080, -731, -400, -120, -8, 5, 64, 350, 512, 809, 1024, 1080,
+    };
+
+    /** Release velocity in pixels per second */
+    @Param({"0", "3000", "12000"})
+    public int velocity;
+
+    private GestureBenchmark.TargetHost mScrollerHost;
+    private DragGesture<GestureBenchmark.Target> mScrollerGesture;
+    private GestureBenchmark.TargetHost mSpringHost;
+    private DragGesture<GestureBenchmark.Target> mSpringGesture;
+    private int mIndex;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        mScrollerHost = new GestureBenchmark.TargetHost();
+        mScrollerHost.settleTo = 0;
+        mScrollerGesture = mScrollerHost.newGesture();
+        mSpringHost = new GestureBenchmark.TargetHost();
+        mSpringHost.settleTo = 0;
+        mSpringGesture = mSpringHost.newGesture();
+        mSpringGesture.setSettleMode(DragGesture.SETTLE_SPRING);
+        mSpringGesture.setSpringDuration(SPRING_DURATION);
+        mIndex = 0;
+    }
+
+    private int nextDistance() {
+        final int dx = DISTANCES[mIndex];
+        mIndex = mIndex + 1 == DISTANCES.length ? 0 : mIndex + 1;
+        return dx;
+    }
+
+    @Benchmark
+    public int computeSettleDuration() {
+        final int dx = nextDistance();
+        return mScrollerGesture.computeSettleDuration(mScrollerHost.target, dx, 0,
+                dx > 0 ? velocity : -velocity, 0);
+    }
+
+    @Benchmark
+    public int scrollerFrame() {
+        return settleFrame(mScrollerHost, mScrollerGesture);
+    }
+
+    @Benchmark
+    public int springFrame() {
+        return settleFrame(mSpringHost, mSpringGesture);
+    }
+
+    private int settleFrame(GestureBenchmark.TargetHost host,
+            DragGesture<GestureBenchmark.Target> gesture) {
+        if (gesture.getDragState() != DragGesture.STATE_SETTLING) {
+            // Release the target at the distance from 0, moving towards 0
+            final int dx = nextDistance();
+            host.target.left = -dx;
+            gesture.capture(host.target, DragGesture.INVALID_POINTER);
+            gesture.releaseCaptured(dx > 0 ? velocity : -velocity, 0);
+        }
+        host.time += FRAME_TIME;
+        gesture.continueSettling(false);
+        return host.target.left;
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2017 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.swipeback;
+
+import static org.junit.Assert.assertTrue;
+
+import android.app.Instrumentation;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.rule.ActivityTestRule;
+import android.support.test.runner.AndroidJUnit4;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(AndroidJUnit4.class)
+public class SwipeBackLayoutTest {
+
+    @Rule
+    public final ActivityTestRule<SwipeBackTestActivity> mActivityRule =
+            new ActivityTestRule<>(SwipeBackTestActivity.class);
+
+    /**
+     * Swipe the content view out and wait until it settles.
+     */
+    private SwipeBackLayout swipeToFinish(final boolean translation) {
+        final Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+        final SwipeBackLayout layout = mActivityRule.getActivity().getSwipeBackLayout();
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                layout.setTranslationEnabled(translation);
+                layout.swipeToFinish(SwipeBackLayout.EDGE_LEFT);
+            }
+        });
+        // Longer than any settling
+        SystemClock.sleep(DragGesture.MAX_SETTLE_DURATION * 2);
+        instrumentation.waitForIdleSync();
+        return layout;
+    }
+
+    @Test
+    public void finishedAfterSwipeOut() {
+        assertTrue(swipeToFinish(false).isFinished());
+    }
+
+    @Test
+    public void finishedAfterSwipeOutByTranslation() {
+        assertTrue(swipeToFinish(true).isFinished());
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2017 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hippo.swipeback;
+
+import android.graphics.Bitmap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A size-aware bitmap pool. Bitmaps are either in use, bound to a key,
+ * or free to be reused. When the total size exceeds the max size,
+ * free bitmaps are dropped first, then the least recently used bitmaps in use.
+ *
+ * Dropped bitmaps are never recycled, they might be still drawn.
+ */
+final class BitmapPool {
+
+    private final LinkedHashMap<Object, Bitmap> mUsed = new LinkedHashMap<>(16, 0.75f, true);
+    private final List<Bitmap> mFree = new ArrayList<>();
+    private int mMaxSize;
+    private int mSize;
+
+    BitmapPool(int maxSize) {
+        mMaxSize = maxSize;
+    }
+
+    private static int sizeOf(Bitmap bitmap) {
+        return bitmap.getRowBytes() * bitmap.getHeight();
+    }
+
+    /**
+     * Set the max size of all bitmaps in bytes.
+     */
+    void setMaxSize(int maxSize) {
+        mMaxSize = maxSize;
+        trimToSize(maxSize);
+    }
+
+    /**
+     * Return a bitmap of the size and config. It is a free bitmap in the pool,
+     * or a new one. The content of the bitmap is undefined.
+     * Returns {@code null} if the bitmap can't fit in the pool.
+     */
+    Bitmap obtain(int width, int height, Bitmap.Config config) {
+        for (int i = mFree.size() - 1; i >= 0; i--) {
+            final Bitmap bitmap = mFree.get(i);
+            if (bitmap.getWidth() == width && bitmap.getHeight() == height
+                    && bitmap.getConfig() == config) {
+                mFree.remove(i);
+                mSize -= sizeOf(bitmap);
+                return bitmap;
+            }
+        }
+
+        final int bytesPerPixel = config == Bitmap.Config.ARGB_8888 ? 4 : 2;
+        if ((long) width * height * bytesPerPixel > mMaxSize) {
+            return null;
+        }
+        try {
+            return Bitmap.createBitmap(width, height, config);
+        } catch (OutOfMemoryError e) {
+            trimToSize(0);
+            return null;
+        }
+    }
+
+    /**
+     * Bind the bitmap to the key. The bitmap bound to the key before is freed.
+     */
+    void put(Object key, Bitmap bitmap) {
+        release(key);
+        mUsed.put(key, bitmap);
+        mSize += sizeOf(bitmap);
+        trimToSize(mMaxSize);
+    }
+
+    /**
+     * Return the bitmap bound to the key, or {@code null}.
+     */
+    Bitmap get(Object key) {
+        return mUsed.get(key);
+    }
+
+    /**
+     * Free the bitmap bound to the key, it can be reused by {@link #obtain(int, int, Bitmap.Config)}.
+     */
+    void release(Object key) {
+        final Bitmap bitmap = mUsed.remove(key);
+        if (bitmap != null) {
+            mFree.add(bitmap);
+        }
+    }
+
+    private void trimToSize(int maxSize) {
+        while (mSize > maxSize && !mFree.isEmpty()) {
+            mSize -= sizeOf(mFree.remove(0));
+        }
+        final Iterator<Map.Entry<Object, Bitmap>> iterator = mUsed.entrySet().iterator();
+        while (mSize > maxSize && iterator.hasNext()) {
+            mSize -= sizeOf(iterator.next().getValue());
+            iterator.remove();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2017 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hippo.swipeback;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapShader;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.Shader;
+import android.graphics.drawable.Drawable;
+import android.support.v4.content.ContextCompat;
+import android.view.View;
+
+/**
+ * A {@link ShadowRenderer} which rasterizes the shadow drawables
+ * into one-pixel-high bitmaps once, then stretches them vertically
+ * with a clamped {@link BitmapShader}.
+ *
+ * The shadow drawables must be horizontal gradients.
+ */
+public class BitmapShadowRenderer implements ShadowRenderer {
+
+    private static final int FULL_ALPHA = 255;
+
+    private final Drawable mShadowLeft;
+    private final Drawable mShadowRight;
+    private final int mShadowLeftWidth;
+    private final int mShadowRightWidth;
+
+    private Paint mPaintLeft;
+    private Paint mPaintRight;
+
+    public BitmapShadowRenderer(Context context) {
+        this(ContextCompat.getDrawable(context, R.drawable.sbl_shadow_left),
+                ContextCompat.getDrawable(context, R.drawable.sbl_shadow_right));
+    }
+
+    public BitmapShadowRenderer(Drawable shadowLeft, Drawable shadowRight) {
+        mShadowLeft = shadowLeft;
+        mShadowRight = shadowRight;
+        mShadowLeftWidth = Math.max(0, shadowLeft.getIntrinsicWidth());
+        mShadowRightWidth = Math.max(0, shadowRight.getIntrinsicWidth());
+    }
+
+    private static Paint rasterize(Drawable drawable, int width) {
+        final Bitmap bitmap = Bitmap.createBitmap(width, 1, Bitmap.Config.ARGB_8888);
+        drawable.setBounds(0, 0, width, 1);
+        drawable.draw(new Canvas(bitmap));
+        final Paint paint = new Paint();
+        paint.setShader(new BitmapShader(bitmap, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP));
+        return paint;
+    }
+
+    @Override
+    public int getShadowWidth(int edge) {
+        if (edge == SwipeBackLayout.EDGE_LEFT) {
+            return mShadowLeftWidth;
+        } else if (edge == SwipeBackLayout.EDGE_RIGHT) {
+            return mShadowRightWidth;
+        } else {
+            return 0;
+        }
+    }
+
+    @Override
+    public void onStateChange(View content, int edge, int state) {}
+
+    @Override
+    public void draw(Canvas canvas, View content, int edge, Rect bounds, float opacity) {
+        final Paint paint;
+        final int width;
+        final int left;
+        if (edge == SwipeBackLayout.EDGE_LEFT) {
+            width = mShadowLeftWidth;
+            if (width == 0) {
+                return;
+            }
+            if (mPaintLeft == null) {
+                mPaintLeft = rasterize(mShadowLeft, width);
+            }
+            paint = mPaintLeft;
+            left = bounds.left - width;
+        } else if (edge == SwipeBackLayout.EDGE_RIGHT) {
+            width = mShadowRightWidth;
+            if (width == 0) {
+                return;
+            }
+            if (mPaintRight == null) {
+                mPaintRight = rasterize(mShadowRight, width);
+            }
+            paint = mPaintRight;
+            left = bounds.right;
+        } else {
+            return;
+        }
+
+        paint.setAlpha((int) (opacity * FULL_ALPHA));
+        final int saved = canvas.save();
+        canvas.translate(left, bounds.top);
+        canvas.drawRect(0, 0, width, bounds.height(), paint);
+        canvas.restoreToCount(saved);
+    }
+}
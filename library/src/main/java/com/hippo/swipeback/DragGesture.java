@@ -0,0 +1,1511 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hippo.swipeback;
+
+/**
+ * DragGesture is the platform independent part of {@link ViewDragHelper}. It consumes
+ * {@link TouchSamples}, tracks pointers, edges, touch slop and velocity, decides
+ * when a target is captured, dragged and released, and steps the settling after release.
+ * Everything about the targets themselves, hit testing, moving and clamping,
+ * goes through a {@link Host}. Scroller settling is computed by a {@link Scroller}.
+ *
+ * @param <T> the type of the dragged targets
+ */
+class DragGesture<T> {
+
+  /**
+   * A null/invalid pointer ID.
+   */
+  static final int INVALID_POINTER = -1;
+
+  /**
+   * A target is not currently being dragged or animating as a result of a fling/snap.
+   */
+  static final int STATE_IDLE = 0;
+
+  /**
+   * A target is currently being dragged. The position is currently changing as a result
+   * of user input or simulated user input.
+   */
+  static final int STATE_DRAGGING = 1;
+
+  /**
+   * A target is currently settling into place as a result of a fling or
+   * predefined non-interactive motion.
+   */
+  static final int STATE_SETTLING = 2;
+
+  /**
+   * Edge flag indicating that the left edge should be affected.
+   */
+  static final int EDGE_LEFT = 1 << 0;
+
+  /**
+   * Edge flag indicating that the right edge should be affected.
+   */
+  static final int EDGE_RIGHT = 1 << 1;
+
+  /**
+   * Edge flag indicating that the top edge should be affected.
+   */
+  static final int EDGE_TOP = 1 << 2;
+
+  /**
+   * Edge flag indicating that the bottom edge should be affected.
+   */
+  static final int EDGE_BOTTOM = 1 << 3;
+
+  /**
+   * Edge flag set indicating all edges should be affected.
+   */
+  static final int EDGE_ALL = EDGE_LEFT | EDGE_TOP | EDGE_RIGHT | EDGE_BOTTOM;
+
+  /**
+   * Indicates that a check should occur along the horizontal axis
+   */
+  static final int DIRECTION_HORIZONTAL = 1 << 0;
+
+  /**
+   * Indicates that a check should occur along the vertical axis
+   */
+  static final int DIRECTION_VERTICAL = 1 << 1;
+
+  /**
+   * Indicates that a check should occur along all axes
+   */
+  static final int DIRECTION_ALL = DIRECTION_HORIZONTAL | DIRECTION_VERTICAL;
+
+  // Same as MotionEvent.MAX_POINTER_ID, which is hidden
+  static final int MAX_POINTER_ID = 31;
+  private static final int POINTER_CAPACITY = MAX_POINTER_ID + 1;
+
+  static final int BASE_SETTLE_DURATION = 256; // ms
+  static final int MAX_SETTLE_DURATION = 600; // ms
+  static final int MIN_SETTLE_DURATION = 16; // ms
+  static final int DEFAULT_SPRING_DURATION = 300; // ms
+
+  /**
+   * Settle with the scroller. The duration depends on distance and velocity.
+   */
+  static final int SETTLE_SCROLLER = 0;
+
+  /**
+   * Settle along a critically damped spring, starting with the release velocity.
+   */
+  static final int SETTLE_SPRING = 1;
+
+  private static final int DEFAULT_PREDICTION_TIME = 16; // ms
+
+  /**
+   * A Host is the platform side of a DragGesture. It knows the targets and the container
+   * they are dragged in, and receives the decisions made by the gesture.
+   * All coordinates are in the container's coordinate system.
+   */
+  interface Host<T> {
+
+    /**
+     * @return the width of the container
+     */
+    int getWidth();
+
+    /**
+     * @return the height of the container
+     */
+    int getHeight();
+
+    /**
+     * @return the topmost target under the point, or null
+     */
+    T findTargetUnder(int x, int y);
+
+    /**
+     * @return true if the target is under the point
+     */
+    boolean isTargetUnder(T target, int x, int y);
+
+    /**
+     * @return the current left position of the target
+     */
+    int getLeft(T target);
+
+    /**
+     * @return the current top position of the target
+     */
+    int getTop(T target);
+
+    /**
+     * @return the magnitude of the target's horizontal range of motion, 0 if it can't move
+     */
+    int getHorizontalDragRange(T target);
+
+    /**
+     * @return the magnitude of the target's vertical range of motion, 0 if it can't move
+     */
+    int getVerticalDragRange(T target);
+
+    /**
+     * @return the clamped left position of the target
+     */
+    int clampHorizontal(T target, int left, int dx);
+
+    /**
+     * @return the clamped top position of the target
+     */
+    int clampVertical(T target, int top, int dy);
+
+    /**
+     * @return true if the pointer is allowed to drag the target
+     */
+    boolean tryCapture(T target, int pointerId);
+
+    /**
+     * Called when the target is captured, before the state goes to {@link #STATE_DRAGGING}.
+     */
+    void onCaptured(T target, int pointerId);
+
+    /**
+     * Move the dragged target to the clamped position and report it.
+     * {@code dx} and {@code dy} are the clamped changes.
+     */
+    void dragTarget(T target, int left, int top, int dx, int dy);
+
+    /**
+     * Move the settling target by (dx, dy) without reporting it.
+     */
+    void moveTarget(T target, int dx, int dy);
+
+    /**
+     * Report the position of the settling target.
+     */
+    void onPositionChanged(T target, int left, int top, int dx, int dy);
+
+    /**
+     * Called when the dragged target is released. The host may start settling it
+     * before it returns, otherwise the state goes to {@link #STATE_IDLE}.
+     */
+    void onReleased(T target, float xvel, float yvel);
+
+    /**
+     * Called when the drag state changes.
+     */
+    void onDragStateChanged(int state);
+
+    /**
+     * Called when tracked edges are touched while nothing is captured.
+     */
+    void onEdgeTouched(int edgeFlags, int pointerId);
+
+    /**
+     * @return true to lock the edge, so no edge drag starts from it
+     */
+    boolean onEdgeLock(int edgeFlags);
+
+    /**
+     * Called when a deliberate drag away from tracked edges starts.
+     */
+    void onEdgeDragStarted(int edgeFlags, int pointerId);
+
+    /**
+     * Call {@link DragGesture#onDragFrame()} on next frame.
+     */
+    void scheduleDragFrame();
+
+    /**
+     * Cancel the call scheduled by {@link #scheduleDragFrame()}.
+     */
+    void cancelDragFrame();
+
+    /**
+     * Set the state to {@link #STATE_IDLE} later, out of the current layout or drawing.
+     */
+    void scheduleIdle();
+
+    /**
+     * Cancel the call scheduled by {@link #scheduleIdle()}.
+     */
+    void cancelIdle();
+
+    /**
+     * @return the time of the current frame in milliseconds
+     */
+    long currentTimeMillis();
+  }
+
+  /**
+   * The platform scroller which settles targets in {@link #SETTLE_SCROLLER} mode
+   * and for flings. It keeps its own clock.
+   */
+  interface Scroller {
+
+    void startScroll(int startX, int startY, int dx, int dy, int duration);
+
+    void fling(int startX, int startY, int velocityX, int velocityY,
+        int minX, int maxX, int minY, int maxY);
+
+    /**
+     * @return true if the scroller is still moving
+     */
+    boolean computeScrollOffset();
+
+    int getCurrX();
+
+    int getCurrY();
+
+    int getFinalX();
+
+    int getFinalY();
+
+    /**
+     * Stop the scroller at the final position.
+     */
+    void abortAnimation();
+  }
+
+  // Current drag state; idle, dragging or settling
+  private int mDragState;
+
+  // Distance to travel before a drag may begin
+  private int mTouchSlop;
+
+  // Last known position/pointer tracking, indexed by pointer ID.
+  // Pointer IDs are in [0, MAX_POINTER_ID], so the whole state is allocated up front
+  // and pointers down fit in the bit mask mPointersDown.
+  private int mActivePointerId = INVALID_POINTER;
+  private final float[] mInitialMotionX = new float[POINTER_CAPACITY];
+  private final float[] mInitialMotionY = new float[POINTER_CAPACITY];
+  private final float[] mLastMotionX = new float[POINTER_CAPACITY];
+  private final float[] mLastMotionY = new float[POINTER_CAPACITY];
+  private final int[] mInitialEdgesTouched = new int[POINTER_CAPACITY];
+  private final int[] mEdgeDragsInProgress = new int[POINTER_CAPACITY];
+  private final int[] mEdgeDragsLocked = new int[POINTER_CAPACITY];
+  private int mPointersDown;
+
+  private final VelocityEstimator mVelocityEstimator = new VelocityEstimator(POINTER_CAPACITY);
+  private float mMaxVelocity;
+  private float mMinVelocity;
+
+  private int mEdgeSize;
+  private int mTrackingEdges;
+
+  // Move the captured target to predicted pointer position
+  private boolean mPredictTouch;
+  private int mPredictionTime = DEFAULT_PREDICTION_TIME;
+  private int mMaxPredictionOffset;
+  private final TouchPredictor mPredictor = new TouchPredictor();
+  // The latest predicted offset
+  private int mPredictedX;
+  private int mPredictedY;
+  // The predicted offset applied to the captured target, which may be clamped
+  private int mPredictionOffsetX;
+  private int mPredictionOffsetY;
+
+  // Apply drag motion once per frame instead of once per event
+  private boolean mCoalesceDrag;
+  private int mPendingDragDx;
+  private int mPendingDragDy;
+  private boolean mDragFramePosted;
+
+  private final Host<T> mHost;
+
+  private final Scroller mScroller;
+  private int mSettleMode = SETTLE_SCROLLER;
+  private int mSpringDuration = DEFAULT_SPRING_DURATION;
+  private final SpringSettler mSpring = new SpringSettler();
+  // True if current settling is driven by mSpring
+  private boolean mSpringSettling;
+
+  private T mCapturedTarget;
+  private boolean mReleaseInProgress;
+  // Velocity passed to Host#onReleased
+  private float mReleaseXVelocity;
+  private float mReleaseYVelocity;
+
+  /**
+   * @param host the host of the gesture
+   * @param scroller the scroller to settle targets
+   * @param touchSlop distance in pixels to travel before a drag may begin
+   * @param edgeSize size of edges in pixels
+   * @param minVelocity minimum velocity in pixels per second
+   * @param maxVelocity maximum velocity in pixels per second
+   * @param maxPredictionOffset the bound of predicted offsets in pixels
+   */
+  DragGesture(Host<T> host, Scroller scroller, int touchSlop, int edgeSize, float minVelocity,
+      float maxVelocity, int maxPredictionOffset) {
+    if (host == null) {
+      throw new IllegalArgumentException("Host may not be null");
+    }
+    if (scroller == null) {
+      throw new IllegalArgumentException("Scroller may not be null");
+    }
+    mHost = host;
+    mScroller = scroller;
+    mTouchSlop = touchSlop;
+    mEdgeSize = edgeSize;
+    mMinVelocity = minVelocity;
+    mMaxVelocity = maxVelocity;
+    mMaxPredictionOffset = maxPredictionOffset;
+  }
+
+  void setTouchSlop(int touchSlop) {
+    mTouchSlop = touchSlop;
+  }
+
+  int getTouchSlop() {
+    return mTouchSlop;
+  }
+
+  void setMinVelocity(float minVel) {
+    mMinVelocity = minVel;
+  }
+
+  float getMinVelocity() {
+    return mMinVelocity;
+  }
+
+  int getEdgeSize() {
+    return mEdgeSize;
+  }
+
+  void setEdgeTrackingEnabled(int edgeFlags) {
+    mTrackingEdges = edgeFlags;
+  }
+
+  void setVelocityTimeWindow(int timeWindow) {
+    mVelocityEstimator.setTimeWindow(timeWindow);
+  }
+
+  void setTouchPredictionEnabled(boolean predict) {
+    mPredictTouch = predict;
+  }
+
+  boolean isTouchPredictionEnabled() {
+    return mPredictTouch;
+  }
+
+  void setTouchPredictionTime(int time) {
+    mPredictionTime = time;
+  }
+
+  void setDragCoalescingEnabled(boolean coalesce) {
+    mCoalesceDrag = coalesce;
+    if (!coalesce) {
+      flushPendingDrag();
+    }
+  }
+
+  boolean isDragCoalescingEnabled() {
+    return mCoalesceDrag;
+  }
+
+  void setSettleMode(int mode) {
+    if (mode != SETTLE_SCROLLER && mode != SETTLE_SPRING) {
+      throw new IllegalArgumentException("Invalid settle mode: " + mode);
+    }
+    mSettleMode = mode;
+  }
+
+  int getSettleMode() {
+    return mSettleMode;
+  }
+
+  /**
+   * Set the max duration of spring settling in milliseconds, clamped to
+   * [{@link #MIN_SETTLE_DURATION}, {@link #MAX_SETTLE_DURATION}].
+   */
+  void setSpringDuration(int duration) {
+    mSpringDuration = Math.max(MIN_SETTLE_DURATION, Math.min(duration, MAX_SETTLE_DURATION));
+  }
+
+  int getSpringDuration() {
+    return mSpringDuration;
+  }
+
+  int getDragState() {
+    return mDragState;
+  }
+
+  T getCapturedTarget() {
+    return mCapturedTarget;
+  }
+
+  int getActivePointerId() {
+    return mActivePointerId;
+  }
+
+  /**
+   * @return true while {@link Host#onReleased(Object, float, float)} is called
+   */
+  boolean isReleaseInProgress() {
+    return mReleaseInProgress;
+  }
+
+  float getReleaseXVelocity() {
+    return mReleaseXVelocity;
+  }
+
+  float getReleaseYVelocity() {
+    return mReleaseYVelocity;
+  }
+
+  void setDragState(int state) {
+    mHost.cancelIdle();
+    if (mDragState != state) {
+      mDragState = state;
+      mHost.onDragStateChanged(state);
+      if (mDragState == STATE_IDLE) {
+        mCapturedTarget = null;
+      }
+    }
+  }
+
+  /**
+   * Capture the target without asking {@link Host#tryCapture(Object, int)}.
+   */
+  void capture(T target, int activePointerId) {
+    mCapturedTarget = target;
+    mActivePointerId = activePointerId;
+    mPredictor.reset();
+    mHost.onCaptured(target, activePointerId);
+    setDragState(STATE_DRAGGING);
+  }
+
+  /**
+   * Attempt to capture the target with the given pointer ID. The host will be involved.
+   * If the target is already captured with this pointer this method will immediately
+   * return true without consulting the host.
+   *
+   * @return true if capture was successful
+   */
+  boolean tryCaptureForDrag(T toCapture, int pointerId) {
+    if (toCapture == mCapturedTarget && mActivePointerId == pointerId) {
+      // Already done!
+      return true;
+    }
+    if (toCapture != null && mHost.tryCapture(toCapture, pointerId)) {
+      capture(toCapture, pointerId);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Forget the current event stream, as if ACTION_CANCEL was received.
+   */
+  void cancel() {
+    clearPendingDrag();
+    mPredictor.reset();
+    mPredictedX = 0;
+    mPredictedY = 0;
+    mPredictionOffsetX = 0;
+    mPredictionOffsetY = 0;
+    mActivePointerId = INVALID_POINTER;
+    clearMotionHistory();
+
+    mVelocityEstimator.clear();
+  }
+
+  /**
+   * Move the captured target by the given delta, as if it were dragged by a pointer.
+   * This is only valid in {@link #STATE_DRAGGING}.
+   */
+  void dragCapturedBy(int dx, int dy) {
+    if (mDragState != STATE_DRAGGING || mCapturedTarget == null) {
+      return;
+    }
+    dragTo(mHost.getLeft(mCapturedTarget) + dx, mHost.getTop(mCapturedTarget) + dy, dx, dy);
+  }
+
+  /**
+   * Release the captured target, as if the dragging pointer went up with the given velocity.
+   * This is only valid in {@link #STATE_DRAGGING}.
+   */
+  void releaseCaptured(float xvel, float yvel) {
+    if (mDragState != STATE_DRAGGING) {
+      return;
+    }
+    dispatchReleased(clampVelocity(xvel), clampVelocity(yvel));
+  }
+
+  /**
+   * Clamp the magnitude of the velocity to the minimum and maximum velocity.
+   */
+  float clampVelocity(float velocity) {
+    return clampMag(velocity, mMinVelocity, mMaxVelocity);
+  }
+
+  /**
+   * Compute the duration to settle the target by (dx, dy) with the given velocity.
+   *
+   * @return the duration in milliseconds
+   */
+  int computeSettleDuration(T target, int dx, int dy, int xvel, int yvel) {
+    xvel = clampMag(xvel, (int) mMinVelocity, (int) mMaxVelocity);
+    yvel = clampMag(yvel, (int) mMinVelocity, (int) mMaxVelocity);
+    final int absDx = Math.abs(dx);
+    final int absDy = Math.abs(dy);
+    final int absXVel = Math.abs(xvel);
+    final int absYVel = Math.abs(yvel);
+    final int addedVel = absXVel + absYVel;
+    final int addedDistance = absDx + absDy;
+
+    final float xweight = xvel != 0 ? (float) absXVel / addedVel :
+        (float) absDx / addedDistance;
+    final float yweight = yvel != 0 ? (float) absYVel / addedVel :
+        (float) absDy / addedDistance;
+
+    int xduration = computeAxisDuration(dx, xvel, mHost.getHorizontalDragRange(target));
+    int yduration = computeAxisDuration(dy, yvel, mHost.getVerticalDragRange(target));
+
+    return (int) (xduration * xweight + yduration * yweight);
+  }
+
+  private int computeAxisDuration(int delta, int velocity, int motionRange) {
+    if (delta == 0) {
+      return 0;
+    }
+
+    final int width = mHost.getWidth();
+    final int halfWidth = width / 2;
+    final float distanceRatio = Math.min(1f, (float) Math.abs(delta) / width);
+    final float distance = halfWidth + halfWidth
+        * distanceInfluenceForSnapDuration(distanceRatio);
+
+    int duration;
+    velocity = Math.abs(velocity);
+    if (velocity > 0) {
+      duration = 4 * Math.round(1000 * Math.abs(distance / velocity));
+    } else {
+      final float range = (float) Math.abs(delta) / motionRange;
+      duration = (int) ((range + 1) * BASE_SETTLE_DURATION);
+    }
+    return Math.min(duration, MAX_SETTLE_DURATION);
+  }
+
+  /**
+   * Clamp the magnitude of value for absMin and absMax.
+   * If the value is below the minimum, it will be clamped to zero.
+   * If the value is above the maximum, it will be clamped to the maximum.
+   *
+   * @param value Value to clamp
+   * @param absMin Absolute value of the minimum significant value to return
+   * @param absMax Absolute value of the maximum value to return
+   * @return The clamped value with the same sign as <code>value</code>
+   */
+  private static int clampMag(int value, int absMin, int absMax) {
+    final int absValue = Math.abs(value);
+    if (absValue < absMin) return 0;
+    if (absValue > absMax) return value > 0 ? absMax : -absMax;
+    return value;
+  }
+
+  /**
+   * Clamp the magnitude of value for absMin and absMax.
+   * If the value is below the minimum, it will be clamped to zero.
+   * If the value is above the maximum, it will be clamped to the maximum.
+   *
+   * @param value Value to clamp
+   * @param absMin Absolute value of the minimum significant value to return
+   * @param absMax Absolute value of the maximum value to return
+   * @return The clamped value with the same sign as <code>value</code>
+   */
+  private static float clampMag(float value, float absMin, float absMax) {
+    final float absValue = Math.abs(value);
+    if (absValue < absMin) return 0;
+    if (absValue > absMax) return value > 0 ? absMax : -absMax;
+    return value;
+  }
+
+  private static float distanceInfluenceForSnapDuration(float f) {
+    f -= 0.5f; // center the values about 0.
+    f *= 0.3f * Math.PI / 2.0f;
+    return (float) Math.sin(f);
+  }
+
+  /**
+   * {@link #cancel()}, but also abort all motion in progress and snap to the end of any
+   * settling.
+   */
+  void abort() {
+    cancel();
+    if (mDragState == STATE_SETTLING) {
+      final T target = mCapturedTarget;
+      final int oldX;
+      final int oldY;
+      final int newX;
+      final int newY;
+      if (mSpringSettling) {
+        oldX = mSpring.getCurrX();
+        oldY = mSpring.getCurrY();
+        mSpring.abort();
+        newX = mSpring.getCurrX();
+        newY = mSpring.getCurrY();
+      } else {
+        oldX = mScroller.getCurrX();
+        oldY = mScroller.getCurrY();
+        mScroller.abortAnimation();
+        newX = mScroller.getCurrX();
+        newY = mScroller.getCurrY();
+      }
+      mHost.onPositionChanged(target, newX, newY, newX - oldX, newY - oldY);
+    }
+    setDragState(STATE_IDLE);
+  }
+
+  /**
+   * Settle the target to the given (left, top) position without capturing it.
+   *
+   * @return true if settling should continue through {@link #continueSettling(boolean)} calls
+   */
+  boolean smoothSlideTo(T target, int finalLeft, int finalTop) {
+    mCapturedTarget = target;
+    mActivePointerId = INVALID_POINTER;
+
+    boolean continueSliding = forceSettleCapturedAt(finalLeft, finalTop, 0, 0);
+    if (!continueSliding && mDragState == STATE_IDLE && mCapturedTarget != null) {
+      // If we're in an IDLE state to begin with and aren't moving anywhere, we
+      // end up having a non-null captured target with an IDLE drag state
+      mCapturedTarget = null;
+    }
+
+    return continueSliding;
+  }
+
+  /**
+   * Settle the captured target to the given (left, top) position with the release velocity.
+   * This is only valid in {@link Host#onReleased(Object, float, float)}.
+   *
+   * @return true if settling should continue through {@link #continueSettling(boolean)} calls
+   */
+  boolean settleCapturedAt(int finalLeft, int finalTop) {
+    if (!mReleaseInProgress) {
+      throw new IllegalStateException("Cannot settleCapturedAt outside of a call to "
+          + "Host#onReleased");
+    }
+
+    return forceSettleCapturedAt(finalLeft, finalTop,
+        (int) mReleaseXVelocity, (int) mReleaseYVelocity);
+  }
+
+  /**
+   * Settle the captured target at the given (left, top) position.
+   *
+   * @return true if settling should continue through {@link #continueSettling(boolean)} calls
+   */
+  private boolean forceSettleCapturedAt(int finalLeft, int finalTop, int xvel, int yvel) {
+    final T target = mCapturedTarget;
+    final int startLeft = mHost.getLeft(target);
+    final int startTop = mHost.getTop(target);
+    final int dx = finalLeft - startLeft;
+    final int dy = finalTop - startTop;
+
+    if (dx == 0 && dy == 0) {
+      // Nothing to do. Send callbacks, be done.
+      mScroller.abortAnimation();
+      mSpring.abort();
+      setDragState(STATE_IDLE);
+      return false;
+    }
+
+    mSpringSettling = mSettleMode == SETTLE_SPRING;
+    if (mSpringSettling) {
+      mScroller.abortAnimation();
+      mSpring.start(startLeft, startTop, finalLeft, finalTop,
+          clampVelocity(xvel), clampVelocity(yvel),
+          mHost.currentTimeMillis(), mSpringDuration);
+    } else {
+      final int duration = computeSettleDuration(target, dx, dy, xvel, yvel);
+      mScroller.startScroll(startLeft, startTop, dx, dy, duration);
+    }
+
+    setDragState(STATE_SETTLING);
+    return true;
+  }
+
+  /**
+   * Fling the captured target with the release velocity, always by the scroller.
+   * This is only valid in {@link Host#onReleased(Object, float, float)}.
+   */
+  void flingCaptured(int minLeft, int minTop, int maxLeft, int maxTop) {
+    if (!mReleaseInProgress) {
+      throw new IllegalStateException("Cannot flingCaptured outside of a call to "
+          + "Host#onReleased");
+    }
+
+    final T target = mCapturedTarget;
+    mSpringSettling = false;
+    mSpring.abort();
+    mScroller.fling(mHost.getLeft(target), mHost.getTop(target),
+        (int) mReleaseXVelocity, (int) mReleaseYVelocity, minLeft, maxLeft, minTop, maxTop);
+
+    setDragState(STATE_SETTLING);
+  }
+
+  /**
+   * Move the settling target by the appropriate amount for the current time.
+   *
+   * @param deferCallbacks true to go idle by {@link Host#scheduleIdle()}
+   * @return true if settle is still in progress and needs more calls
+   */
+  boolean continueSettling(boolean deferCallbacks) {
+    if (mDragState == STATE_SETTLING) {
+      final T target = mCapturedTarget;
+      boolean keepGoing;
+      final int x;
+      final int y;
+      final int finalX;
+      final int finalY;
+      if (mSpringSettling) {
+        keepGoing = mSpring.computeOffset(mHost.currentTimeMillis());
+        x = mSpring.getCurrX();
+        y = mSpring.getCurrY();
+        finalX = mSpring.getFinalX();
+        finalY = mSpring.getFinalY();
+      } else {
+        keepGoing = mScroller.computeScrollOffset();
+        x = mScroller.getCurrX();
+        y = mScroller.getCurrY();
+        finalX = mScroller.getFinalX();
+        finalY = mScroller.getFinalY();
+      }
+      final int dx = x - mHost.getLeft(target);
+      final int dy = y - mHost.getTop(target);
+
+      if (dx != 0 || dy != 0) {
+        mHost.moveTarget(target, dx, dy);
+        mHost.onPositionChanged(target, x, y, dx, dy);
+      }
+
+      if (keepGoing && x == finalX && y == finalY) {
+        // Close enough. The interpolator/scroller might think we're still moving
+        // but the user sure doesn't.
+        mScroller.abortAnimation();
+        mSpring.abort();
+        keepGoing = false;
+      }
+
+      if (!keepGoing) {
+        if (deferCallbacks) {
+          mHost.scheduleIdle();
+        } else {
+          setDragState(STATE_IDLE);
+        }
+      }
+    }
+
+    return mDragState == STATE_SETTLING;
+  }
+
+  /**
+   * During a release (mReleaseInProgress) is the only time it is valid for the host
+   * to settle the captured target with the release velocity.
+   */
+  private void dispatchReleased(float xvel, float yvel) {
+    flushPendingDrag();
+    clearPrediction();
+    mReleaseXVelocity = xvel;
+    mReleaseYVelocity = yvel;
+    mReleaseInProgress = true;
+    mHost.onReleased(mCapturedTarget, xvel, yvel);
+    mReleaseInProgress = false;
+
+    if (mDragState == STATE_DRAGGING) {
+      // onReleased didn't call a method that would have changed this. Go idle.
+      setDragState(STATE_IDLE);
+    }
+  }
+
+  private void clearMotionHistory() {
+    // Only reset pointers which are down
+    int pointersDown = mPointersDown;
+    while (pointersDown != 0) {
+      final int pointerId = Integer.numberOfTrailingZeros(pointersDown);
+      pointersDown &= pointersDown - 1;
+      resetPointer(pointerId);
+    }
+    mPointersDown = 0;
+  }
+
+  private void clearMotionHistory(int pointerId) {
+    if (!isPointerDown(pointerId)) {
+      return;
+    }
+    resetPointer(pointerId);
+    mVelocityEstimator.clear(pointerId);
+    mPointersDown &= ~(1 << pointerId);
+  }
+
+  private void resetPointer(int pointerId) {
+    mInitialMotionX[pointerId] = 0;
+    mInitialMotionY[pointerId] = 0;
+    mLastMotionX[pointerId] = 0;
+    mLastMotionY[pointerId] = 0;
+    mInitialEdgesTouched[pointerId] = 0;
+    mEdgeDragsInProgress[pointerId] = 0;
+    mEdgeDragsLocked[pointerId] = 0;
+  }
+
+  private void saveInitialMotion(float x, float y, int pointerId, long time) {
+    mInitialMotionX[pointerId] = mLastMotionX[pointerId] = x;
+    mInitialMotionY[pointerId] = mLastMotionY[pointerId] = y;
+    mInitialEdgesTouched[pointerId] = getEdgesTouched((int) x, (int) y);
+    mEdgeDragsInProgress[pointerId] = 0;
+    mEdgeDragsLocked[pointerId] = 0;
+    mPointersDown |= 1 << pointerId;
+
+    mVelocityEstimator.clear(pointerId);
+    if (shouldTrackVelocity(pointerId)) {
+      mVelocityEstimator.addSample(pointerId, time, x, y);
+    }
+  }
+
+  /**
+   * Only pointers which touched a tracking edge or are dragging
+   * the captured target need velocity.
+   */
+  private boolean shouldTrackVelocity(int pointerId) {
+    return isPointerDown(pointerId) && ((mInitialEdgesTouched[pointerId] & mTrackingEdges) != 0
+        || pointerId == mActivePointerId);
+  }
+
+  /**
+   * Feed velocity estimator with all samples in the event, historical samples included.
+   * Samples of down events are fed in {@link #saveInitialMotion(float, float, int, long)}.
+   */
+  private void addMovement(TouchSamples ev, int action) {
+    if (action == TouchSamples.ACTION_DOWN || action == TouchSamples.ACTION_POINTER_DOWN) {
+      return;
+    }
+
+    final int pointerCount = ev.getPointerCount();
+    final int historySize = ev.getHistorySize();
+    for (int i = 0; i < pointerCount; i++) {
+      final int pointerId = ev.getPointerId(i);
+      if (!shouldTrackVelocity(pointerId)) {
+        continue;
+      }
+      for (int h = 0; h < historySize; h++) {
+        mVelocityEstimator.addSample(pointerId, ev.getHistoricalEventTime(h),
+            ev.getHistoricalX(i, h), ev.getHistoricalY(i, h));
+      }
+      mVelocityEstimator.addSample(pointerId, ev.getEventTime(), ev.getX(i), ev.getY(i));
+    }
+  }
+
+  private void saveLastMotion(TouchSamples ev) {
+    final int pointerCount = ev.getPointerCount();
+    for (int i = 0; i < pointerCount; i++) {
+      final int pointerId = ev.getPointerId(i);
+      // If pointer is invalid then skip saving on ACTION_MOVE.
+      if (!isPointerDown(pointerId)) {
+        continue;
+      }
+      mLastMotionX[pointerId] = ev.getX(i);
+      mLastMotionY[pointerId] = ev.getY(i);
+    }
+  }
+
+  /**
+   * Check if the given pointer ID represents a pointer that is currently down.
+   * Pointers without a down event, like those of a partial event stream, are not down.
+   */
+  boolean isPointerDown(int pointerId) {
+    return pointerId >= 0 && pointerId <= MAX_POINTER_ID
+        && (mPointersDown & 1 << pointerId) != 0;
+  }
+
+  /**
+   * Check if this event as provided to the container's onInterceptTouchEvent should
+   * cause the container to intercept the touch event stream.
+   *
+   * @return true if the container should intercept
+   */
+  boolean shouldInterceptTouchEvent(TouchSamples ev) {
+    final int action = ev.getActionMasked();
+    final int actionIndex = ev.getActionIndex();
+
+    if (action == TouchSamples.ACTION_DOWN) {
+      // Reset things for a new event stream, just in case we didn't get
+      // the whole previous stream.
+      cancel();
+    }
+
+    addMovement(ev, action);
+
+    switch (action) {
+      case TouchSamples.ACTION_DOWN: {
+        final float x = ev.getX();
+        final float y = ev.getY();
+        final int pointerId = ev.getPointerId(0);
+        saveInitialMotion(x, y, pointerId, ev.getEventTime());
+
+        final T toCapture = mHost.findTargetUnder((int) x, (int) y);
+
+        // Catch a settling target if possible.
+        if (toCapture == mCapturedTarget && mDragState == STATE_SETTLING) {
+          tryCaptureForDrag(toCapture, pointerId);
+        }
+
+        final int edgesTouched = mInitialEdgesTouched[pointerId];
+        if ((edgesTouched & mTrackingEdges) != 0) {
+          mHost.onEdgeTouched(edgesTouched & mTrackingEdges, pointerId);
+        }
+        break;
+      }
+
+      case TouchSamples.ACTION_POINTER_DOWN: {
+        final int pointerId = ev.getPointerId(actionIndex);
+        final float x = ev.getX(actionIndex);
+        final float y = ev.getY(actionIndex);
+
+        saveInitialMotion(x, y, pointerId, ev.getEventTime());
+
+        // A DragGesture can only manipulate one target at a time.
+        if (mDragState == STATE_IDLE) {
+          final int edgesTouched = mInitialEdgesTouched[pointerId];
+          if ((edgesTouched & mTrackingEdges) != 0) {
+            mHost.onEdgeTouched(edgesTouched & mTrackingEdges, pointerId);
+          }
+        } else if (mDragState == STATE_SETTLING) {
+          // Catch a settling target if possible.
+          final T toCapture = mHost.findTargetUnder((int) x, (int) y);
+          if (toCapture == mCapturedTarget) {
+            tryCaptureForDrag(toCapture, pointerId);
+          }
+        }
+        break;
+      }
+
+      case TouchSamples.ACTION_MOVE: {
+        // First to cross a touch slop over a draggable target wins. Also report edge drags.
+        final int pointerCount = ev.getPointerCount();
+        final int historySize = ev.getHistorySize();
+        pointerLoop:
+        for (int i = 0; i < pointerCount; i++) {
+          final int pointerId = ev.getPointerId(i);
+
+          // If pointer is invalid then skip the ACTION_MOVE.
+          if (!isPointerDown(pointerId)) continue;
+
+          // Walk batched historical samples oldest first, so the drag is
+          // detected at the sample which actually crossed the slop.
+          for (int h = 0; h <= historySize; h++) {
+            final float x = h < historySize ? ev.getHistoricalX(i, h) : ev.getX(i);
+            final float y = h < historySize ? ev.getHistoricalY(i, h) : ev.getY(i);
+            if (checkInterceptMove(pointerId, x, y)) {
+              break pointerLoop;
+            }
+          }
+        }
+        saveLastMotion(ev);
+        break;
+      }
+
+      case TouchSamples.ACTION_POINTER_UP: {
+        final int pointerId = ev.getPointerId(actionIndex);
+        clearMotionHistory(pointerId);
+        break;
+      }
+
+      case TouchSamples.ACTION_UP:
+      case TouchSamples.ACTION_CANCEL: {
+        cancel();
+        break;
+      }
+    }
+
+    return mDragState == STATE_DRAGGING;
+  }
+
+  /**
+   * Process a touch event received by the container. This method will call the host
+   * as needed before returning.
+   */
+  void processTouchEvent(TouchSamples ev) {
+    final int action = ev.getActionMasked();
+    final int actionIndex = ev.getActionIndex();
+
+    if (action == TouchSamples.ACTION_DOWN) {
+      // Reset things for a new event stream, just in case we didn't get
+      // the whole previous stream.
+      cancel();
+    }
+
+    addMovement(ev, action);
+
+    switch (action) {
+      case TouchSamples.ACTION_DOWN: {
+        final float x = ev.getX();
+        final float y = ev.getY();
+        final int pointerId = ev.getPointerId(0);
+        final T toCapture = mHost.findTargetUnder((int) x, (int) y);
+
+        saveInitialMotion(x, y, pointerId, ev.getEventTime());
+
+        // Since the container is already directly processing this touch event,
+        // there is no reason to delay for a slop before dragging.
+        // Start immediately if possible.
+        tryCaptureForDrag(toCapture, pointerId);
+
+        final int edgesTouched = mInitialEdgesTouched[pointerId];
+        if ((edgesTouched & mTrackingEdges) != 0) {
+          mHost.onEdgeTouched(edgesTouched & mTrackingEdges, pointerId);
+        }
+        break;
+      }
+
+      case TouchSamples.ACTION_POINTER_DOWN: {
+        final int pointerId = ev.getPointerId(actionIndex);
+        final float x = ev.getX(actionIndex);
+        final float y = ev.getY(actionIndex);
+
+        saveInitialMotion(x, y, pointerId, ev.getEventTime());
+
+        // A DragGesture can only manipulate one target at a time.
+        if (mDragState == STATE_IDLE) {
+          // If we're idle we can do anything! Treat it like a normal down event.
+
+          final T toCapture = mHost.findTargetUnder((int) x, (int) y);
+          tryCaptureForDrag(toCapture, pointerId);
+
+          final int edgesTouched = mInitialEdgesTouched[pointerId];
+          if ((edgesTouched & mTrackingEdges) != 0) {
+            mHost.onEdgeTouched(edgesTouched & mTrackingEdges, pointerId);
+          }
+        } else if (mCapturedTarget != null
+            && mHost.isTargetUnder(mCapturedTarget, (int) x, (int) y)) {
+          // We're still tracking a captured target. If the same target is under this
+          // point, we'll swap to controlling it with this pointer instead.
+          // (This will still work if we're "catching" a settling target.)
+
+          tryCaptureForDrag(mCapturedTarget, pointerId);
+        }
+        break;
+      }
+
+      case TouchSamples.ACTION_MOVE: {
+        if (mDragState == STATE_DRAGGING) {
+          // If pointer is invalid then skip the ACTION_MOVE.
+          if (!isPointerDown(mActivePointerId)) break;
+
+          final int index = ev.findPointerIndex(mActivePointerId);
+          if (index < 0) break;
+          final float x = ev.getX(index);
+          final float y = ev.getY(index);
+          final int idx = (int) (x - mLastMotionX[mActivePointerId]);
+          final int idy = (int) (y - mLastMotionY[mActivePointerId]);
+
+          if (mPredictTouch) {
+            final int historySize = ev.getHistorySize();
+            for (int h = 0; h < historySize; h++) {
+              mPredictor.addSample(ev.getHistoricalEventTime(h),
+                  ev.getHistoricalX(index, h), ev.getHistoricalY(index, h));
+            }
+            mPredictor.addSample(ev.getEventTime(), x, y);
+            // Move the target to the predicted position instead of the last one
+            mPredictedX = (int) mPredictor.predictX(mPredictionTime, mMaxPredictionOffset);
+            mPredictedY = (int) mPredictor.predictY(mPredictionTime, mMaxPredictionOffset);
+          }
+
+          if (mCoalesceDrag) {
+            mPendingDragDx += idx;
+            mPendingDragDy += idy;
+            if (!mDragFramePosted && (mPendingDragDx != 0 || mPendingDragDy != 0
+                || mPredictTouch)) {
+              mDragFramePosted = true;
+              mHost.scheduleDragFrame();
+            }
+          } else {
+            applyDrag(idx, idy);
+          }
+
+          saveLastMotion(ev);
+        } else {
+          // Check to see if any pointer is now over a draggable target.
+          final int pointerCount = ev.getPointerCount();
+          final int historySize = ev.getHistorySize();
+          pointerLoop:
+          for (int i = 0; i < pointerCount; i++) {
+            final int pointerId = ev.getPointerId(i);
+
+            // If pointer is invalid then skip the ACTION_MOVE.
+            if (!isPointerDown(pointerId)) continue;
+
+            // Walk batched historical samples oldest first, so the drag is
+            // detected at the sample which actually crossed the slop.
+            for (int h = 0; h <= historySize; h++) {
+              final float x = h < historySize ? ev.getHistoricalX(i, h) : ev.getX(i);
+              final float y = h < historySize ? ev.getHistoricalY(i, h) : ev.getY(i);
+              if (checkProcessMove(pointerId, x, y)) {
+                break pointerLoop;
+              }
+            }
+          }
+          saveLastMotion(ev);
+        }
+        break;
+      }
+
+      case TouchSamples.ACTION_POINTER_UP: {
+        final int pointerId = ev.getPointerId(actionIndex);
+        if (mDragState == STATE_DRAGGING && pointerId == mActivePointerId) {
+          // Try to find another pointer that's still holding on to the captured target.
+          int newActivePointer = INVALID_POINTER;
+          final int pointerCount = ev.getPointerCount();
+          for (int i = 0; i < pointerCount; i++) {
+            final int id = ev.getPointerId(i);
+            if (id == mActivePointerId) {
+              // This one's going away, skip.
+              continue;
+            }
+
+            final float x = ev.getX(i);
+            final float y = ev.getY(i);
+            if (mHost.findTargetUnder((int) x, (int) y) == mCapturedTarget
+                && tryCaptureForDrag(mCapturedTarget, id)) {
+              newActivePointer = mActivePointerId;
+              break;
+            }
+          }
+
+          if (newActivePointer == INVALID_POINTER) {
+            // We didn't find another pointer still touching the target, release it.
+            releaseForPointerUp();
+          }
+        }
+        clearMotionHistory(pointerId);
+        break;
+      }
+
+      case TouchSamples.ACTION_UP: {
+        if (mDragState == STATE_DRAGGING) {
+          releaseForPointerUp();
+        }
+        cancel();
+        break;
+      }
+
+      case TouchSamples.ACTION_CANCEL: {
+        if (mDragState == STATE_DRAGGING) {
+          dispatchReleased(0, 0);
+        }
+        cancel();
+        break;
+      }
+    }
+  }
+
+  /**
+   * Check one move sample of the pointer in {@link #shouldInterceptTouchEvent(TouchSamples)}.
+   *
+   * @return true if no more samples should be checked
+   */
+  private boolean checkInterceptMove(int pointerId, float x, float y) {
+    final float dx = x - mInitialMotionX[pointerId];
+    final float dy = y - mInitialMotionY[pointerId];
+
+    final T toCapture = mHost.findTargetUnder((int) x, (int) y);
+    final boolean pastSlop = toCapture != null && checkTouchSlop(toCapture, dx, dy);
+    if (pastSlop) {
+      // check the host's drag ranges to know
+      // if you can move at all along an axis, then see if it
+      // would clamp to the same value. If you can't move at
+      // all in every dimension with a nonzero range, bail.
+      final int oldLeft = mHost.getLeft(toCapture);
+      final int targetLeft = oldLeft + (int) dx;
+      final int newLeft = mHost.clampHorizontal(toCapture, targetLeft, (int) dx);
+      final int oldTop = mHost.getTop(toCapture);
+      final int targetTop = oldTop + (int) dy;
+      final int newTop = mHost.clampVertical(toCapture, targetTop, (int) dy);
+      final int horizontalDragRange = mHost.getHorizontalDragRange(toCapture);
+      final int verticalDragRange = mHost.getVerticalDragRange(toCapture);
+      if ((horizontalDragRange == 0 || horizontalDragRange > 0
+          && newLeft == oldLeft) && (verticalDragRange == 0
+          || verticalDragRange > 0 && newTop == oldTop)) {
+        return true;
+      }
+    }
+    reportNewEdgeDrags(dx, dy, pointerId);
+    if (mDragState == STATE_DRAGGING) {
+      // Host might have started an edge drag
+      return true;
+    }
+
+    return pastSlop && tryCaptureForDrag(toCapture, pointerId);
+  }
+
+  /**
+   * Check one move sample of the pointer in {@link #processTouchEvent(TouchSamples)}
+   * while no target is dragged.
+   *
+   * @return true if no more samples should be checked
+   */
+  private boolean checkProcessMove(int pointerId, float x, float y) {
+    final float dx = x - mInitialMotionX[pointerId];
+    final float dy = y - mInitialMotionY[pointerId];
+
+    reportNewEdgeDrags(dx, dy, pointerId);
+    if (mDragState == STATE_DRAGGING) {
+      // Host might have started an edge drag.
+      return true;
+    }
+
+    final T toCapture = mHost.findTargetUnder((int) x, (int) y);
+    return checkTouchSlop(toCapture, dx, dy)
+        && tryCaptureForDrag(toCapture, pointerId);
+  }
+
+  private void reportNewEdgeDrags(float dx, float dy, int pointerId) {
+    int dragsStarted = 0;
+    if (checkNewEdgeDrag(dx, dy, pointerId, EDGE_LEFT)) {
+      dragsStarted |= EDGE_LEFT;
+    }
+    if (checkNewEdgeDrag(dy, dx, pointerId, EDGE_TOP)) {
+      dragsStarted |= EDGE_TOP;
+    }
+    if (checkNewEdgeDrag(dx, dy, pointerId, EDGE_RIGHT)) {
+      dragsStarted |= EDGE_RIGHT;
+    }
+    if (checkNewEdgeDrag(dy, dx, pointerId, EDGE_BOTTOM)) {
+      dragsStarted |= EDGE_BOTTOM;
+    }
+
+    if (dragsStarted != 0) {
+      mEdgeDragsInProgress[pointerId] |= dragsStarted;
+      mHost.onEdgeDragStarted(dragsStarted, pointerId);
+    }
+  }
+
+  private boolean checkNewEdgeDrag(float delta, float odelta, int pointerId, int edge) {
+    final float absDelta = Math.abs(delta);
+    final float absODelta = Math.abs(odelta);
+
+    if ((mInitialEdgesTouched[pointerId] & edge) != edge  || (mTrackingEdges & edge) == 0
+        || (mEdgeDragsLocked[pointerId] & edge) == edge
+        || (mEdgeDragsInProgress[pointerId] & edge) == edge
+        || (absDelta <= mTouchSlop && absODelta <= mTouchSlop)) {
+      return false;
+    }
+    if (absDelta < absODelta * 0.5f && mHost.onEdgeLock(edge)) {
+      mEdgeDragsLocked[pointerId] |= edge;
+      return false;
+    }
+    return (mEdgeDragsInProgress[pointerId] & edge) == 0 && absDelta > mTouchSlop;
+  }
+
+  /**
+   * Check if we've crossed a reasonable touch slop for the given target.
+   * If the target cannot be dragged along the horizontal or vertical axis, motion
+   * along that axis will not count toward the slop check.
+   */
+  private boolean checkTouchSlop(T target, float dx, float dy) {
+    if (target == null) {
+      return false;
+    }
+    final boolean checkHorizontal = mHost.getHorizontalDragRange(target) > 0;
+    final boolean checkVertical = mHost.getVerticalDragRange(target) > 0;
+
+    if (checkHorizontal && checkVertical) {
+      return dx * dx + dy * dy > mTouchSlop * mTouchSlop;
+    } else if (checkHorizontal) {
+      return Math.abs(dx) > mTouchSlop;
+    } else if (checkVertical) {
+      return Math.abs(dy) > mTouchSlop;
+    }
+    return false;
+  }
+
+  /**
+   * Check if any pointer tracked in the current gesture has crossed
+   * the required slop threshold.
+   */
+  boolean checkTouchSlop(int directions) {
+    int pointersDown = mPointersDown;
+    while (pointersDown != 0) {
+      final int pointerId = Integer.numberOfTrailingZeros(pointersDown);
+      pointersDown &= pointersDown - 1;
+      if (checkTouchSlop(directions, pointerId)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Check if the specified pointer tracked in the current gesture has crossed
+   * the required slop threshold.
+   */
+  boolean checkTouchSlop(int directions, int pointerId) {
+    if (!isPointerDown(pointerId)) {
+      return false;
+    }
+
+    final boolean checkHorizontal = (directions & DIRECTION_HORIZONTAL) == DIRECTION_HORIZONTAL;
+    final boolean checkVertical = (directions & DIRECTION_VERTICAL) == DIRECTION_VERTICAL;
+
+    final float dx = mLastMotionX[pointerId] - mInitialMotionX[pointerId];
+    final float dy = mLastMotionY[pointerId] - mInitialMotionY[pointerId];
+
+    if (checkHorizontal && checkVertical) {
+      return dx * dx + dy * dy > mTouchSlop * mTouchSlop;
+    } else if (checkHorizontal) {
+      return Math.abs(dx) > mTouchSlop;
+    } else if (checkVertical) {
+      return Math.abs(dy) > mTouchSlop;
+    }
+    return false;
+  }
+
+  /**
+   * Check if any of the edges specified were initially touched in the currently active gesture.
+   */
+  boolean isEdgeTouched(int edges) {
+    int pointersDown = mPointersDown;
+    while (pointersDown != 0) {
+      final int pointerId = Integer.numberOfTrailingZeros(pointersDown);
+      pointersDown &= pointersDown - 1;
+      if ((mInitialEdgesTouched[pointerId] & edges) != 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Check if any of the edges specified were initially touched by the pointer with
+   * the specified ID.
+   */
+  boolean isEdgeTouched(int edges, int pointerId) {
+    return isPointerDown(pointerId) && (mInitialEdgesTouched[pointerId] & edges) != 0;
+  }
+
+  /**
+   * Return the edges of the container that the given point falls into. Edges are
+   * reported regardless of whether tracking has been enabled for them.
+   */
+  int getEdgesTouched(int x, int y) {
+    int result = 0;
+
+    if (x < mEdgeSize) result |= EDGE_LEFT;
+    if (y < mEdgeSize) result |= EDGE_TOP;
+    if (x > mHost.getWidth() - mEdgeSize) result |= EDGE_RIGHT;
+    if (y > mHost.getHeight() - mEdgeSize) result |= EDGE_BOTTOM;
+
+    return result;
+  }
+
+  private void releaseForPointerUp() {
+    mVelocityEstimator.computeVelocity(mActivePointerId);
+    final float xvel = clampVelocity(mVelocityEstimator.getXVelocity());
+    final float yvel = clampVelocity(mVelocityEstimator.getYVelocity());
+    dispatchReleased(xvel, yvel);
+  }
+
+  /**
+   * Apply the drag motion accumulated since last frame.
+   */
+  void flushPendingDrag() {
+    final int dx = mPendingDragDx;
+    final int dy = mPendingDragDy;
+    clearPendingDrag();
+    if ((dx != 0 || dy != 0 || mPredictTouch)
+        && mDragState == STATE_DRAGGING && mCapturedTarget != null) {
+      applyDrag(dx, dy);
+    }
+  }
+
+  /**
+   * Move the captured target by the pointer motion, plus the predicted offset
+   * if prediction is enabled.
+   */
+  private void applyDrag(int dx, int dy) {
+    final int left = mHost.getLeft(mCapturedTarget);
+    final int top = mHost.getTop(mCapturedTarget);
+    if (!mPredictTouch) {
+      dragTo(left + dx, top + dy, dx, dy);
+      return;
+    }
+
+    // Clamp the real position first, then the predicted position. Only the part of
+    // the prediction which survives clamping is applied, so it can be taken back exactly.
+    final int realLeft = clampLeft(left - mPredictionOffsetX + dx, dx);
+    final int realTop = clampTop(top - mPredictionOffsetY + dy, dy);
+    final int predictedLeft = clampLeft(realLeft + mPredictedX, mPredictedX);
+    final int predictedTop = clampTop(realTop + mPredictedY, mPredictedY);
+    mPredictionOffsetX = predictedLeft - realLeft;
+    mPredictionOffsetY = predictedTop - realTop;
+    dragTo(predictedLeft, predictedTop, predictedLeft - left, predictedTop - top);
+  }
+
+  private int clampLeft(int left, int dx) {
+    return dx != 0 ? mHost.clampHorizontal(mCapturedTarget, left, dx) : left;
+  }
+
+  private int clampTop(int top, int dy) {
+    return dy != 0 ? mHost.clampVertical(mCapturedTarget, top, dy) : top;
+  }
+
+  /**
+   * Called by the host on the frame scheduled by {@link Host#scheduleDragFrame()}.
+   */
+  void onDragFrame() {
+    mDragFramePosted = false;
+    flushPendingDrag();
+  }
+
+  /**
+   * Move the captured target back to the real pointer position.
+   */
+  private void clearPrediction() {
+    final int dx = -mPredictionOffsetX;
+    final int dy = -mPredictionOffsetY;
+    mPredictor.reset();
+    mPredictedX = 0;
+    mPredictedY = 0;
+    mPredictionOffsetX = 0;
+    mPredictionOffsetY = 0;
+    if ((dx != 0 || dy != 0) && mDragState == STATE_DRAGGING && mCapturedTarget != null) {
+      dragTo(mHost.getLeft(mCapturedTarget) + dx, mHost.getTop(mCapturedTarget) + dy, dx, dy);
+    }
+  }
+
+  private void clearPendingDrag() {
+    mPendingDragDx = 0;
+    mPendingDragDy = 0;
+    if (mDragFramePosted) {
+      mDragFramePosted = false;
+      mHost.cancelDragFrame();
+    }
+  }
+
+  private void dragTo(int left, int top, int dx, int dy) {
+    if (dx == 0 && dy == 0) {
+      return;
+    }
+    int clampedX = left;
+    int clampedY = top;
+    final int oldLeft = mHost.getLeft(mCapturedTarget);
+    final int oldTop = mHost.getTop(mCapturedTarget);
+    if (dx != 0) {
+      clampedX = mHost.clampHorizontal(mCapturedTarget, left, dx);
+    }
+    if (dy != 0) {
+      clampedY = mHost.clampVertical(mCapturedTarget, top, dy);
+    }
+    mHost.dragTarget(mCapturedTarget, clampedX, clampedY, clampedX - oldLeft, clampedY - oldTop);
+  }
+}
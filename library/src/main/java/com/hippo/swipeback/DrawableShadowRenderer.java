@@ -0,0 +1,78 @@
+/*
+ * Copyright 2017 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hippo.swipeback;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.support.v4.content.ContextCompat;
+import android.view.View;
+
+/**
+ * A {@link ShadowRenderer} which draws drawables beside the content view.
+ */
+public class DrawableShadowRenderer implements ShadowRenderer {
+
+    private static final int FULL_ALPHA = 255;
+
+    private final Drawable mShadowLeft;
+    private final Drawable mShadowRight;
+
+    public DrawableShadowRenderer(Context context) {
+        this(ContextCompat.getDrawable(context, R.drawable.sbl_shadow_left),
+                ContextCompat.getDrawable(context, R.drawable.sbl_shadow_right));
+    }
+
+    public DrawableShadowRenderer(Drawable shadowLeft, Drawable shadowRight) {
+        mShadowLeft = shadowLeft;
+        mShadowRight = shadowRight;
+    }
+
+    @Override
+    public int getShadowWidth(int edge) {
+        if (edge == SwipeBackLayout.EDGE_LEFT) {
+            return mShadowLeft.getIntrinsicWidth();
+        } else if (edge == SwipeBackLayout.EDGE_RIGHT) {
+            return mShadowRight.getIntrinsicWidth();
+        } else {
+            return 0;
+        }
+    }
+
+    @Override
+    public void onStateChange(View content, int edge, int state) {}
+
+    @Override
+    public void draw(Canvas canvas, View content, int edge, Rect bounds, float opacity) {
+        final Drawable shadow;
+        if (edge == SwipeBackLayout.EDGE_LEFT) {
+            shadow = mShadowLeft;
+            shadow.setBounds(bounds.left - shadow.getIntrinsicWidth(), bounds.top,
+                    bounds.left, bounds.bottom);
+        } else if (edge == SwipeBackLayout.EDGE_RIGHT) {
+            shadow = mShadowRight;
+            shadow.setBounds(bounds.right, bounds.top,
+                    bounds.right + shadow.getIntrinsicWidth(), bounds.bottom);
+        } else {
+            return;
+        }
+        shadow.setAlpha((int) (opacity * FULL_ALPHA));
+        shadow.draw(canvas);
+    }
+}
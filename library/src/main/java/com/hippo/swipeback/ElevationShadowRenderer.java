@@ -0,0 +1,90 @@
+/*
+ * Copyright 2017 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hippo.swipeback;
+
+import android.annotation.TargetApi;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.os.Build;
+import android.support.v4.view.ViewCompat;
+import android.view.View;
+import android.view.ViewOutlineProvider;
+
+/**
+ * A {@link ShadowRenderer} which lifts the content view while swiping,
+ * and lets the compositor draw the shadow of its outline.
+ *
+ * It only works on API 21 and above, nothing is drawn on lower API.
+ */
+public class ElevationShadowRenderer implements ShadowRenderer {
+
+    private final float mElevation;
+
+    private View mLiftedView;
+    private float mOldElevation;
+    private Object mOldOutlineProvider;
+
+    /**
+     * @param elevation the elevation of the content view while swiping, in pixels
+     */
+    public ElevationShadowRenderer(float elevation) {
+        mElevation = elevation;
+    }
+
+    @Override
+    public int getShadowWidth(int edge) {
+        return (int) Math.ceil(mElevation);
+    }
+
+    @Override
+    public void onStateChange(View content, int edge, int state) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            return;
+        }
+        if (state == ViewDragHelper.STATE_IDLE) {
+            if (mLiftedView != null) {
+                drop(mLiftedView);
+                mLiftedView = null;
+            }
+        } else if (mLiftedView == null && content != null) {
+            mLiftedView = content;
+            lift(content);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private void lift(View view) {
+        mOldElevation = ViewCompat.getElevation(view);
+        mOldOutlineProvider = view.getOutlineProvider();
+        // Background may be transparent, use bounds to make sure outline exists
+        view.setOutlineProvider(ViewOutlineProvider.BOUNDS);
+        ViewCompat.setElevation(view, mElevation);
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private void drop(View view) {
+        ViewCompat.setElevation(view, mOldElevation);
+        view.setOutlineProvider((ViewOutlineProvider) mOldOutlineProvider);
+        mOldOutlineProvider = null;
+    }
+
+    @Override
+    public void draw(Canvas canvas, View content, int edge, Rect bounds, float opacity) {
+        // The compositor draws the shadow
+    }
+}
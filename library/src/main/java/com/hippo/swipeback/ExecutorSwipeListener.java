@@ -0,0 +1,163 @@
+/*
+ * Copyright 2017 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hippo.swipeback;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ExecutorSwipeListener forwards events to another listener on an executor.
+ * Events are delivered one by one in order, even on a thread pool.
+ * Progress is coalesced: if the delegate falls behind, adjacent pending progress
+ * is merged and only the latest is delivered. Progress never merges across other events.
+ *
+ * <p>The latest progress is kept in a single cell instead of the queue, so progress
+ * allocates nothing. It only goes into the queue when another event follows it
+ * before it's delivered.
+ */
+final class ExecutorSwipeListener implements SwipeEventListener {
+
+    private static final Object SWIPE_OVER_THRESHOLD = new Object();
+    private static final Object FINISH = new Object();
+
+    // Percent bits of a NaN which arithmetic never produces
+    private static final long NONE = -1L;
+
+    private static final class StateChange {
+
+        final int edge;
+        final int state;
+
+        StateChange(int edge, int state) {
+            this.edge = edge;
+            this.state = state;
+        }
+    }
+
+    private final SwipeEventListener mDelegate;
+    private final Executor mExecutor;
+
+    // Events other than progress, and Float progress which another event followed
+    private final Queue<Object> mQueue = new ConcurrentLinkedQueue<>();
+    // The latest progress, or NONE. The high 32 bits count the events queued before it,
+    // the low 32 bits are the bits of the percent.
+    private final AtomicLong mSwipe = new AtomicLong(NONE);
+    // Number of events queued, only touched by the thread calling this listener
+    private int mQueuedCount;
+    // Number of events delivered, only touched by drain()
+    private int mDeliveredCount;
+    private final AtomicBoolean mScheduled = new AtomicBoolean();
+
+    private final Runnable mDrainRunnable = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    ExecutorSwipeListener(SwipeEventListener delegate, Executor executor) {
+        mDelegate = delegate;
+        mExecutor = executor;
+    }
+
+    @Override
+    public void onSwipe(float percent) {
+        mSwipe.set((long) mQueuedCount << 32
+                | Float.floatToRawIntBits(percent) & 0xffffffffL);
+        schedule();
+    }
+
+    @Override
+    public void onStateChange(int edge, int state) {
+        enqueue(new StateChange(edge, state));
+    }
+
+    @Override
+    public void onSwipeOverThreshold() {
+        enqueue(SWIPE_OVER_THRESHOLD);
+    }
+
+    @Override
+    public void onFinish() {
+        enqueue(FINISH);
+    }
+
+    private void enqueue(Object event) {
+        // Progress before this event must be delivered before it
+        final long swipe = mSwipe.getAndSet(NONE);
+        if (swipe != NONE) {
+            mQueue.offer(Float.intBitsToFloat((int) swipe));
+        }
+        mQueue.offer(event);
+        mQueuedCount++;
+        schedule();
+    }
+
+    private void schedule() {
+        if (mScheduled.compareAndSet(false, true)) {
+            mExecutor.execute(mDrainRunnable);
+        }
+    }
+
+    private void drain() {
+        try {
+            for (;;) {
+                final Object event = mQueue.poll();
+                if (event != null) {
+                    deliver(event);
+                    continue;
+                }
+                final long swipe = mSwipe.get();
+                if (swipe == NONE) {
+                    break;
+                }
+                // If events were queued before it, they are polled first. Checking the count
+                // also fails the CAS if the progress was taken and set again in between.
+                if ((int) (swipe >>> 32) == mDeliveredCount
+                        && mSwipe.compareAndSet(swipe, NONE)) {
+                    mDelegate.onSwipe(Float.intBitsToFloat((int) swipe));
+                }
+            }
+        } finally {
+            mScheduled.set(false);
+            // Events may be offered after the last poll
+            if (!mQueue.isEmpty() || mSwipe.get() != NONE) {
+                schedule();
+            }
+        }
+    }
+
+    private void deliver(Object event) {
+        if (event instanceof Float) {
+            mDelegate.onSwipe((Float) event);
+            return;
+        }
+        if (event == SWIPE_OVER_THRESHOLD) {
+            mDelegate.onSwipeOverThreshold();
+        } else if (event == FINISH) {
+            mDelegate.onFinish();
+        } else {
+            final StateChange stateChange = (StateChange) event;
+            mDelegate.onStateChange(stateChange.edge, stateChange.state);
+        }
+        mDeliveredCount++;
+    }
+}
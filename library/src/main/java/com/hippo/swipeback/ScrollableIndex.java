@@ -0,0 +1,183 @@
+/*
+ * Copyright 2017 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hippo.swipeback;
+
+import android.support.v4.view.ViewCompat;
+import android.view.View;
+import android.view.ViewGroup;
+import java.util.Arrays;
+
+/**
+ * ScrollableIndex keeps the bounds of horizontally scrollable descendants of a view.
+ * The bounds are split into horizontal bands at every top and bottom, so the views
+ * under a point are found by a binary search on the bands.
+ *
+ * It must be rebuilt when the layout or any scroll position changes.
+ */
+final class ScrollableIndex {
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private boolean mDirty = true;
+
+    // Bounds of scrollable views, in the coordinate system of the root parent
+    private View[] mViews = new View[INITIAL_CAPACITY];
+    private int[] mLefts = new int[INITIAL_CAPACITY];
+    private int[] mTops = new int[INITIAL_CAPACITY];
+    private int[] mRights = new int[INITIAL_CAPACITY];
+    private int[] mBottoms = new int[INITIAL_CAPACITY];
+    private int mViewCount;
+
+    // Sorted unique tops and bottoms, band i is [mBandEdges[i], mBandEdges[i + 1])
+    private int[] mBandEdges = new int[INITIAL_CAPACITY * 2];
+    private int mBandEdgeCount;
+    // Views in band i are mBandViews[mBandStarts[i]] until mBandViews[mBandStarts[i + 1]]
+    private int[] mBandStarts = new int[INITIAL_CAPACITY * 2];
+    private int[] mBandViews = new int[INITIAL_CAPACITY];
+
+    /**
+     * Mark the index out of date.
+     */
+    void invalidate() {
+        mDirty = true;
+    }
+
+    boolean isDirty() {
+        return mDirty;
+    }
+
+    /**
+     * Collect horizontally scrollable views in {@code root} and its descendants.
+     * {@code root} is a child of the parent, whose coordinate system is used.
+     */
+    void rebuild(View root) {
+        mDirty = false;
+        Arrays.fill(mViews, 0, mViewCount, null);
+        mViewCount = 0;
+        if (root != null) {
+            collect(root, 0, 0);
+        }
+        buildBands();
+    }
+
+    private void collect(View view, int offsetX, int offsetY) {
+        if (view.getVisibility() != View.VISIBLE) {
+            return;
+        }
+
+        final int left = offsetX + view.getLeft() + (int) ViewCompat.getTranslationX(view);
+        final int top = offsetY + view.getTop() + (int) ViewCompat.getTranslationY(view);
+        if (ViewCompat.canScrollHorizontally(view, -1)
+                || ViewCompat.canScrollHorizontally(view, 1)) {
+            add(view, left, top, left + view.getWidth(), top + view.getHeight());
+        }
+
+        if (view instanceof ViewGroup) {
+            final ViewGroup group = (ViewGroup) view;
+            final int childOffsetX = left - view.getScrollX();
+            final int childOffsetY = top - view.getScrollY();
+            for (int i = 0, n = group.getChildCount(); i < n; i++) {
+                collect(group.getChildAt(i), childOffsetX, childOffsetY);
+            }
+        }
+    }
+
+    private void add(View view, int left, int top, int right, int bottom) {
+        if (mViewCount == mViews.length) {
+            final int capacity = mViewCount * 2;
+            mViews = Arrays.copyOf(mViews, capacity);
+            mLefts = Arrays.copyOf(mLefts, capacity);
+            mTops = Arrays.copyOf(mTops, capacity);
+            mRights = Arrays.copyOf(mRights, capacity);
+            mBottoms = Arrays.copyOf(mBottoms, capacity);
+        }
+        mViews[mViewCount] = view;
+        mLefts[mViewCount] = left;
+        mTops[mViewCount] = top;
+        mRights[mViewCount] = right;
+        mBottoms[mViewCount] = bottom;
+        mViewCount++;
+    }
+
+    private void buildBands() {
+        final int viewCount = mViewCount;
+        if (mBandEdges.length < viewCount * 2) {
+            mBandEdges = new int[viewCount * 2];
+            mBandStarts = new int[viewCount * 2];
+        }
+
+        // Sorted unique edges
+        for (int i = 0; i < viewCount; i++) {
+            mBandEdges[i * 2] = mTops[i];
+            mBandEdges[i * 2 + 1] = mBottoms[i];
+        }
+        Arrays.sort(mBandEdges, 0, viewCount * 2);
+        int edgeCount = 0;
+        for (int i = 0; i < viewCount * 2; i++) {
+            if (edgeCount == 0 || mBandEdges[edgeCount - 1] != mBandEdges[i]) {
+                mBandEdges[edgeCount++] = mBandEdges[i];
+            }
+        }
+        mBandEdgeCount = edgeCount;
+
+        // Views in each band
+        int size = 0;
+        for (int band = 0; band < edgeCount - 1; band++) {
+            mBandStarts[band] = size;
+            final int bandTop = mBandEdges[band];
+            for (int i = 0; i < viewCount; i++) {
+                if (mTops[i] <= bandTop && mBottoms[i] > bandTop) {
+                    if (size == mBandViews.length) {
+                        mBandViews = Arrays.copyOf(mBandViews, size * 2);
+                    }
+                    mBandViews[size++] = i;
+                }
+            }
+        }
+        if (edgeCount > 0) {
+            mBandStarts[edgeCount - 1] = size;
+        }
+    }
+
+    /**
+     * Returns {@code true} if any indexed view under the point can scroll
+     * in the direction. Negative direction to check scrolling left, positive to right.
+     */
+    boolean canScrollHorizontally(int x, int y, int direction) {
+        if (mBandEdgeCount < 2) {
+            return false;
+        }
+        int band = Arrays.binarySearch(mBandEdges, 0, mBandEdgeCount, y);
+        if (band < 0) {
+            // Insertion point - 1 is the band whose top is below y
+            band = -band - 2;
+        }
+        if (band < 0 || band >= mBandEdgeCount - 1) {
+            return false;
+        }
+
+        for (int i = mBandStarts[band], end = mBandStarts[band + 1]; i < end; i++) {
+            final int index = mBandViews[i];
+            if (x >= mLefts[index] && x < mRights[index]
+                    && ViewCompat.canScrollHorizontally(mViews[index], direction)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
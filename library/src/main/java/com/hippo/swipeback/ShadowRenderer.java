@@ -0,0 +1,49 @@
+/*
+ * Copyright 2017 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hippo.swipeback;
+
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.view.View;
+
+/**
+ * ShadowRenderer draws the shadow beside the content view of {@link SwipeBackLayout}.
+ */
+public interface ShadowRenderer {
+
+    /**
+     * Returns the width of the shadow beside the edge, in pixels.
+     *
+     * {@code edge} is one of {@link SwipeBackLayout#EDGE_LEFT}
+     * and {@link SwipeBackLayout#EDGE_RIGHT}.
+     */
+    int getShadowWidth(int edge);
+
+    /**
+     * Called when swipe state changed.
+     */
+    void onStateChange(View content, int edge, int state);
+
+    /**
+     * Draw shadow beside the edge of the content view.
+     *
+     * @param bounds the bounds of the content view in {@code SwipeBackLayout}
+     * @param opacity the opacity of the shadow, in [0, 1.0f]
+     */
+    void draw(Canvas canvas, View content, int edge, Rect bounds, float opacity);
+}
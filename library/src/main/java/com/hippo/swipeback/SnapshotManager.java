@@ -0,0 +1,162 @@
+/*
+ * Copyright 2017 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hippo.swipeback;
+
+import android.annotation.TargetApi;
+import android.app.Activity;
+import android.app.Application;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Build;
+import android.os.Bundle;
+import android.view.View;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SnapshotManager keeps the stack of activities, and captures a downscaled
+ * snapshot of an activity when it is covered by an activity with snapshot enabled.
+ *
+ * Only works on Ice Cream Sandwich and above.
+ */
+@TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+final class SnapshotManager implements Application.ActivityLifecycleCallbacks {
+
+    private static final int DEFAULT_POOL_SIZE = 8 * 1024 * 1024; // bytes
+
+    private static SnapshotManager sInstance;
+
+    private final BitmapPool mPool = new BitmapPool(DEFAULT_POOL_SIZE);
+    // Activities in creation order
+    private final List<Activity> mActivities = new ArrayList<>();
+    // Activities which want the snapshot of the activity below, and their snapshot scale
+    private final List<Activity> mSnapshotActivities = new ArrayList<>();
+    private final List<Float> mSnapshotScales = new ArrayList<>();
+
+    private SnapshotManager() {}
+
+    static boolean isSupported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH;
+    }
+
+    static SnapshotManager getInstance(Activity activity) {
+        if (sInstance == null) {
+            sInstance = new SnapshotManager();
+            activity.getApplication().registerActivityLifecycleCallbacks(sInstance);
+        }
+        return sInstance;
+    }
+
+    void setPoolSize(int maxSize) {
+        mPool.setMaxSize(maxSize);
+    }
+
+    /**
+     * The activity will get the snapshot of the activity below it.
+     */
+    void register(Activity activity, float scale) {
+        if (!mActivities.contains(activity)) {
+            mActivities.add(activity);
+        }
+        final int index = mSnapshotActivities.indexOf(activity);
+        if (index >= 0) {
+            mSnapshotScales.set(index, scale);
+        } else {
+            mSnapshotActivities.add(activity);
+            mSnapshotScales.add(scale);
+        }
+    }
+
+    void unregister(Activity activity) {
+        final int index = mSnapshotActivities.indexOf(activity);
+        if (index >= 0) {
+            mSnapshotActivities.remove(index);
+            mSnapshotScales.remove(index);
+        }
+        mPool.release(activity);
+    }
+
+    /**
+     * Return the snapshot of the activity below, or {@code null}.
+     */
+    Bitmap getSnapshot(Activity activity) {
+        return mPool.get(activity);
+    }
+
+    private void capture(Activity covered, Activity target, float scale) {
+        final View decor = covered.getWindow().peekDecorView();
+        if (decor == null || decor.getWidth() == 0 || decor.getHeight() == 0) {
+            return;
+        }
+        final int width = Math.max(1, (int) (decor.getWidth() * scale));
+        final int height = Math.max(1, (int) (decor.getHeight() * scale));
+        // Free the old snapshot so it can be reused
+        mPool.release(target);
+        final Bitmap bitmap = mPool.obtain(width, height, Bitmap.Config.RGB_565);
+        if (bitmap == null) {
+            return;
+        }
+        final Canvas canvas = new Canvas(bitmap);
+        canvas.scale((float) width / decor.getWidth(), (float) height / decor.getHeight());
+        decor.draw(canvas);
+        mPool.put(target, bitmap);
+    }
+
+    @Override
+    public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+        if (!mActivities.contains(activity)) {
+            mActivities.add(activity);
+        }
+    }
+
+    @Override
+    public void onActivityStarted(Activity activity) {}
+
+    @Override
+    public void onActivityResumed(Activity activity) {}
+
+    @Override
+    public void onActivityPaused(Activity activity) {}
+
+    @Override
+    public void onActivityStopped(Activity activity) {
+        if (activity.isFinishing()) {
+            return;
+        }
+        // Activities created before SnapshotManager are at the bottom
+        final int index = mActivities.indexOf(activity) + 1;
+        if (index >= mActivities.size()) {
+            // It is the top activity, not covered
+            return;
+        }
+        final Activity above = mActivities.get(index);
+        final int snapshotIndex = mSnapshotActivities.indexOf(above);
+        if (snapshotIndex >= 0) {
+            capture(activity, above, mSnapshotScales.get(snapshotIndex));
+        }
+    }
+
+    @Override
+    public void onActivitySaveInstanceState(Activity activity, Bundle outState) {}
+
+    @Override
+    public void onActivityDestroyed(Activity activity) {
+        mActivities.remove(activity);
+        unregister(activity);
+    }
+}
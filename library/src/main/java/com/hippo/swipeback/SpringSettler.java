@@ -0,0 +1,138 @@
+/*
+ * Copyright 2017 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hippo.swipeback;
+
+/**
+ * SpringSettler moves a point to its final position along a critically damped spring.
+ * It starts with the given velocity, so motion continues smoothly from a release.
+ * The stiffness is derived from the duration, and the point is snapped to the
+ * final position once the duration elapses. It never passes the final position.
+ */
+final class SpringSettler {
+
+    // At t = duration, a spring released at rest has
+    // (1 + K) * e^-K, about 1% of the distance left
+    private static final float K = 6.6f;
+
+    private int mStartX;
+    private int mStartY;
+    private int mFinalX;
+    private int mFinalY;
+    private int mCurrX;
+    private int mCurrY;
+    // Velocity in pixels per millisecond
+    private float mVelocityX;
+    private float mVelocityY;
+    private long mStartTime;
+    private int mDuration;
+    private float mOmega;
+    private boolean mFinished = true;
+
+    /**
+     * Start settling.
+     *
+     * @param xvel X velocity in pixels per second
+     * @param yvel Y velocity in pixels per second
+     * @param time start time in milliseconds
+     * @param duration max duration in milliseconds
+     */
+    void start(int startX, int startY, int finalX, int finalY,
+            float xvel, float yvel, long time, int duration) {
+        mStartX = startX;
+        mStartY = startY;
+        mFinalX = finalX;
+        mFinalY = finalY;
+        mCurrX = startX;
+        mCurrY = startY;
+        mVelocityX = xvel / 1000;
+        mVelocityY = yvel / 1000;
+        mStartTime = time;
+        mDuration = Math.max(1, duration);
+        mOmega = K / mDuration;
+        mFinished = startX == finalX && startY == finalY;
+    }
+
+    /**
+     * Update current position for the time.
+     *
+     * @return true if it is still settling
+     */
+    boolean computeOffset(long time) {
+        if (mFinished) {
+            return false;
+        }
+
+        final long elapsed = time - mStartTime;
+        if (elapsed >= mDuration) {
+            abort();
+            return false;
+        }
+
+        mCurrX = position(mStartX, mFinalX, mVelocityX, elapsed);
+        mCurrY = position(mStartY, mFinalY, mVelocityY, elapsed);
+        if (mCurrX == mFinalX && mCurrY == mFinalY) {
+            mFinished = true;
+            return false;
+        }
+        return true;
+    }
+
+    private int position(int start, int end, float velocity, long elapsed) {
+        final int distance = start - end;
+        if (distance == 0) {
+            return end;
+        }
+        final float t = elapsed;
+        final float offset = (distance + (velocity + mOmega * distance) * t)
+                * (float) Math.exp(-mOmega * t);
+        if (offset * distance <= 0) {
+            // Never pass the final position
+            return end;
+        }
+        return end + Math.round(offset);
+    }
+
+    /**
+     * Stop settling and snap to the final position.
+     */
+    void abort() {
+        mCurrX = mFinalX;
+        mCurrY = mFinalY;
+        mFinished = true;
+    }
+
+    boolean isFinished() {
+        return mFinished;
+    }
+
+    int getCurrX() {
+        return mCurrX;
+    }
+
+    int getCurrY() {
+        return mCurrY;
+    }
+
+    int getFinalX() {
+        return mFinalX;
+    }
+
+    int getFinalY() {
+        return mFinalY;
+    }
+}
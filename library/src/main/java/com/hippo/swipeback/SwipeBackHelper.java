@@ -22,20 +22,38 @@ package com.hippo.swipeback;
 
 import android.app.Activity;
 import android.content.res.TypedArray;
+import android.graphics.Bitmap;
 import android.graphics.drawable.Drawable;
 import android.os.Bundle;
 import android.support.v4.view.ViewCompat;
+import android.util.Log;
 import android.view.ViewGroup;
 
 public class SwipeBackHelper {
 
+    private static final String LOG_TAG = SwipeBackHelper.class.getSimpleName();
+
+    private static final float DEFAULT_SNAPSHOT_SCALE = 0.5f;
+
     private static final int[] SB_ATTRS = new int[] {
         R.attr.sb_windowBackground
     };
 
+    private static final int[] WINDOW_ATTRS = new int[] {
+        android.R.attr.windowIsTranslucent
+    };
+
     private final Activity mActivity;
     private final SwipeBackLayout mSwipeBackLayout;
 
+    // True if the window is opaque, and converted to translucent only while swiping
+    private boolean mTranslucentOnDemand;
+    // True if the window is converted to translucent
+    private boolean mConvertedToTranslucent;
+
+    private boolean mSnapshotEnabled;
+    private float mSnapshotScale = DEFAULT_SNAPSHOT_SCALE;
+
     public SwipeBackHelper(Activity activity) {
         mActivity = activity;
         mSwipeBackLayout = new SwipeBackLayout(activity);
@@ -44,7 +62,35 @@ public class SwipeBackHelper {
             public void onSwipe(float percent) {}
 
             @Override
-            public void onStateChange(int edge, int state) {}
+            public void onStateChange(int edge, int state) {
+                if (mSnapshotEnabled) {
+                    if (state != ViewDragHelper.STATE_IDLE) {
+                        final Bitmap snapshot =
+                                SnapshotManager.getInstance(mActivity).getSnapshot(mActivity);
+                        mSwipeBackLayout.setSnapshot(snapshot);
+                        if (snapshot != null) {
+                            // Snapshot is drawn, keep window opaque
+                            return;
+                        }
+                    } else if (!mActivity.isFinishing() && !mSwipeBackLayout.isFinished()) {
+                        mSwipeBackLayout.setSnapshot(null);
+                    }
+                }
+
+                if (!mTranslucentOnDemand) {
+                    return;
+                }
+                if (state != ViewDragHelper.STATE_IDLE) {
+                    if (!mConvertedToTranslucent) {
+                        mConvertedToTranslucent =
+                                TranslucentConverter.convertToTranslucent(mActivity);
+                    }
+                } else if (mConvertedToTranslucent && !mActivity.isFinishing()
+                        && !mSwipeBackLayout.isFinished()) {
+                    TranslucentConverter.convertFromTranslucent(mActivity);
+                    mConvertedToTranslucent = false;
+                }
+            }
 
             @Override
             public void onSwipeOverThreshold() {}
@@ -57,7 +103,7 @@ public class SwipeBackHelper {
                     mActivity.overridePendingTransition(0, 0);
                 }
             }
-        });
+        }, SwipeBackLayout.EVENT_STATE | SwipeBackLayout.EVENT_FINISH);
     }
 
     /**
@@ -68,14 +114,29 @@ public class SwipeBackHelper {
     }
 
     private void attachToActivity(Activity activity, SwipeBackLayout layout) {
+        // Opaque window is converted to translucent only while swiping
+        final TypedArray wa = activity.getTheme().obtainStyledAttributes(WINDOW_ATTRS);
+        final boolean translucent = wa.getBoolean(0, false);
+        wa.recycle();
+        mTranslucentOnDemand = !translucent;
+        if (mTranslucentOnDemand && !TranslucentConverter.isSupported()) {
+            Log.w(LOG_TAG, "Window translucency can't be converted, "
+                    + "window background is shown while swiping");
+        }
+
         // Remove DecorView background
         final ViewGroup decor = (ViewGroup) activity.getWindow().getDecorView();
+        final Drawable decorBackground = decor.getBackground();
         ViewCompat.setBackground(decor, null);
 
         // Set background for the first child of DecorView
         final TypedArray a = activity.getTheme().obtainStyledAttributes(SB_ATTRS);
-        final Drawable background = a.getDrawable(0);
+        Drawable background = a.getDrawable(0);
         a.recycle();
+        if (background == null && mTranslucentOnDemand) {
+            // Opaque window, keep window background
+            background = decorBackground;
+        }
         final ViewGroup decorChild = (ViewGroup) decor.getChildAt(0);
         ViewCompat.setBackground(decorChild, background);
 
@@ -93,6 +154,48 @@ public class SwipeBackHelper {
         decor.addView(layout);
     }
 
+    /**
+     * Set whether to draw a snapshot of the previous activity while swiping,
+     * instead of showing the previous activity itself. The snapshot is captured
+     * when the previous activity is covered by this activity, so the window can stay
+     * opaque and the previous activity stops drawing. If no snapshot is available,
+     * it falls back to the translucent window.
+     *
+     * Call it before {@link #onPostCreate()}. Only works on Ice Cream Sandwich and above.
+     */
+    public void setSnapshotEnabled(boolean enabled) {
+        mSnapshotEnabled = enabled && SnapshotManager.isSupported();
+        if (mSnapshotEnabled) {
+            SnapshotManager.getInstance(mActivity).register(mActivity, mSnapshotScale);
+        } else if (SnapshotManager.isSupported()) {
+            SnapshotManager.getInstance(mActivity).unregister(mActivity);
+            mSwipeBackLayout.setSnapshot(null);
+        }
+    }
+
+    /**
+     * Set the scale of the snapshot to the previous activity, in (0, 1.0f].
+     */
+    public void setSnapshotScale(float scale) {
+        if (scale <= 0 || scale > 1.0f) {
+            throw new IllegalArgumentException("Snapshot scale should be in (0, 1.0]");
+        }
+        mSnapshotScale = scale;
+        if (mSnapshotEnabled) {
+            SnapshotManager.getInstance(mActivity).register(mActivity, scale);
+        }
+    }
+
+    /**
+     * Set the max size in bytes of all snapshots, shared by all activities.
+     * The least recently used snapshots are dropped if the size is exceeded.
+     */
+    public static void setSnapshotPoolSize(Activity activity, int maxSize) {
+        if (SnapshotManager.isSupported()) {
+            SnapshotManager.getInstance(activity).setPoolSize(maxSize);
+        }
+    }
+
     /**
      * Return the {@code SwipeBackLayout}.
      */
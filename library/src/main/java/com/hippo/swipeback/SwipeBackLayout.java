@@ -21,21 +21,24 @@ package com.hippo.swipeback;
  */
 
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
+import android.graphics.Paint;
 import android.graphics.Rect;
-import android.graphics.drawable.Drawable;
+import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
-import android.support.v4.content.ContextCompat;
+import android.support.v4.view.NestedScrollingParent;
+import android.support.v4.view.NestedScrollingParentHelper;
 import android.support.v4.view.ViewCompat;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
-import java.util.ArrayList;
-import java.util.List;
+import android.view.ViewTreeObserver;
+import java.util.concurrent.Executor;
 
-public class SwipeBackLayout extends ViewGroup {
+public class SwipeBackLayout extends ViewGroup implements NestedScrollingParent {
 
     public static final String LOG_TAG = SwipeBackLayout.class.getSimpleName();
 
@@ -43,6 +46,19 @@ public class SwipeBackLayout extends ViewGroup {
     public static final int EDGE_LEFT = ViewDragHelper.EDGE_LEFT;
     public static final int EDGE_RIGHT = ViewDragHelper.EDGE_RIGHT;
 
+    /** Event mask for {@link SwipeListener#onSwipe(float)}. */
+    public static final int EVENT_SWIPE = SwipeListenerList.EVENT_SWIPE;
+    /** Event mask for {@link SwipeListener#onStateChange(int, int)}. */
+    public static final int EVENT_STATE = SwipeListenerList.EVENT_STATE;
+    /** Event mask for {@link SwipeListener#onSwipeOverThreshold()}. */
+    public static final int EVENT_THRESHOLD = SwipeListenerList.EVENT_THRESHOLD;
+    /** Event mask for {@link SwipeListener#onFinish()}. */
+    public static final int EVENT_FINISH = SwipeListenerList.EVENT_FINISH;
+    public static final int EVENT_ALL = SwipeListenerList.EVENT_ALL;
+
+    public static final int SETTLE_SCROLLER = ViewDragHelper.SETTLE_SCROLLER;
+    public static final int SETTLE_SPRING = ViewDragHelper.SETTLE_SPRING;
+
     private static final float DEFAULT_SCROLL_THRESHOLD = 0.3f;
     private static final int OVER_SCROLL_DISTANCE = 10;
     private static final int DEFAULT_SCRIM_COLOR = 0x99000000;
@@ -53,14 +69,22 @@ public class SwipeBackLayout extends ViewGroup {
 
     private int mEdgeFlag;
     private float mScrollThreshold = DEFAULT_SCROLL_THRESHOLD;
-    private Drawable mShadowLeft;
-    private Drawable mShadowRight;
+    private ShadowRenderer mShadowRenderer;
     private int mScrimColor = DEFAULT_SCRIM_COLOR;
+    private final Paint mScrimPaint = new Paint();
+    // Alpha of the color in mScrimPaint, -1 for invalid
+    private int mScrimAlpha = -1;
+    // Scrim and shadow alpha of last invalidation, -1 for invalid
+    private int mInvalidatedScrimAlpha = -1;
+    private int mInvalidatedShadowAlpha = -1;
 
     private boolean mSwipeEnabled = true;
     private boolean mSwipeVertically = true;
     private float mStartX;
     private float mStartY;
+    // True if the current gesture can never start a swipe,
+    // all events are ignored until next ACTION_DOWN
+    private boolean mIgnoreGesture;
 
     private int mTrackingEdge;
     private float mScrollPercent;
@@ -68,9 +92,57 @@ public class SwipeBackLayout extends ViewGroup {
     private int mContentLeft;
     private int mContentTop;
     private boolean mFinished;
+    // Dispatch onFinish as soon as release commits to finishing
+    private boolean mPredictiveFinish;
+
+    private boolean mHardwareLayerEnabled;
+    private int mHardwareLayerMaxPixels = Integer.MAX_VALUE;
+    // The view which is promoted to hardware layer
+    private View mLayerView;
+    private int mLayerViewOldLayerType;
+
+    private final NestedScrollingParentHelper mNestedScrollingParentHelper =
+            new NestedScrollingParentHelper(this);
+    // True if the content view is dragged by nested scrolling
+    private boolean mNestedDragging;
+
+    private boolean mScrollableCheckEnabled;
+    private final ScrollableIndex mScrollableIndex = new ScrollableIndex();
+    private final ViewTreeObserver.OnScrollChangedListener mOnScrollChangedListener =
+            new ViewTreeObserver.OnScrollChangedListener() {
+                @Override
+                public void onScrollChanged() {
+                    mScrollableIndex.invalidate();
+                }
+            };
 
     @Nullable
-    private List<SwipeListener> mSwipeListeners;
+    private Bitmap mSnapshot;
+    private final Paint mSnapshotPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Rect mSnapshotSrc = new Rect();
+    private final Rect mSnapshotDst = new Rect();
+
+    private final SwipeListenerList mSwipeListeners = new SwipeListenerList();
+    private boolean mSwipeFramePosted;
+    private final Runnable mSwipeFrameRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mSwipeFramePosted = false;
+            final boolean trace = SwipeTrace.isEnabled();
+            if (trace) {
+                SwipeTrace.beginSection("SwipeBack:dispatchSwipeFrame");
+            }
+            mSwipeListeners.dispatchSwipeFrame(mScrollPercent);
+            if (trace) {
+                SwipeTrace.endSection();
+            }
+        }
+    };
+
+    @Nullable
+    private SwipeMetricsListener mSwipeMetricsListener;
+    @Nullable
+    private SwipeMetricsTracker mSwipeMetricsTracker;
 
     private final Rect mTempRect = new Rect();
 
@@ -91,8 +163,7 @@ public class SwipeBackLayout extends ViewGroup {
 
     private void init(Context context) {
         mDragHelper = ViewDragHelper.create(this, new ViewDragCallback());
-        mShadowLeft = ContextCompat.getDrawable(context, R.drawable.sbl_shadow_left);
-        mShadowRight = ContextCompat.getDrawable(context, R.drawable.sbl_shadow_right);
+        mShadowRenderer = new DrawableShadowRenderer(context);
     }
 
     @Override
@@ -106,6 +177,9 @@ public class SwipeBackLayout extends ViewGroup {
     @Override
     public void onViewRemoved(View child) {
         super.onViewRemoved(child);
+        if (mLayerView == child) {
+            clearContentLayer();
+        }
         if (mContentView == child) {
             if (getChildCount() > 0) {
                 mContentView = getChildAt(0);
@@ -115,6 +189,23 @@ public class SwipeBackLayout extends ViewGroup {
         }
     }
 
+    /**
+     * Set whether to emit trace sections on swipe back hot paths,
+     * and the drag state as a {@code SwipeBack:state} counter track.
+     * They show up in systrace and Perfetto on API 18 and above.
+     * Disabled by default; nothing is traced while disabled.
+     */
+    public static void setTraceEnabled(boolean enabled) {
+        SwipeTrace.setEnabled(enabled);
+    }
+
+    /**
+     * Returns {@code true} if trace sections are emitted.
+     */
+    public static boolean isTraceEnabled() {
+        return SwipeTrace.isEnabled();
+    }
+
     /**
      * Swipe out contentView and finish the activity.
      *
@@ -126,36 +217,106 @@ public class SwipeBackLayout extends ViewGroup {
 
         final int left;
         if (edge == EDGE_LEFT) {
-            left = childWidth + mShadowLeft.getIntrinsicWidth() + OVER_SCROLL_DISTANCE;
+            left = childWidth + mShadowRenderer.getShadowWidth(EDGE_LEFT) + OVER_SCROLL_DISTANCE;
             mTrackingEdge = EDGE_LEFT;
         } else if (edge == EDGE_RIGHT) {
-            left = -childWidth - mShadowRight.getIntrinsicWidth() - OVER_SCROLL_DISTANCE;
+            left = -childWidth - mShadowRenderer.getShadowWidth(EDGE_RIGHT) - OVER_SCROLL_DISTANCE;
             mTrackingEdge = EDGE_RIGHT;
         } else {
             Log.e(LOG_TAG, "Invalid edge for swipeToFinishActivity: " + edge);
             return;
         }
 
-        mDragHelper.smoothSlideViewTo(mContentView, left, 0);
+        if (mDragHelper.smoothSlideViewTo(mContentView, left, 0) && mPredictiveFinish) {
+            dispatchFinish();
+        }
         invalidate();
     }
 
     /**
-     * Returns {@code true} if the content view swiped to the end.
+     * Returns {@code true} if the content view swiped to the end,
+     * or it is committed to in predictive finish mode.
      */
     public boolean isFinished() {
         return mFinished;
     }
 
     /**
-     * Register the SwipeListener.
+     * Register the SwipeListener for all events.
      */
     public void addSwipeListener(SwipeListener listener) {
+        addSwipeListener(listener, EVENT_ALL);
+    }
+
+    /**
+     * Register the SwipeListener for the events in {@code events},
+     * a combination of {@link #EVENT_SWIPE}, {@link #EVENT_STATE},
+     * {@link #EVENT_THRESHOLD} and {@link #EVENT_FINISH}.
+     * Other methods of the listener are never called.
+     * It's safe to add or remove listeners in callbacks.
+     */
+    public void addSwipeListener(SwipeListener listener, int events) {
+        addSwipeListener(listener, events, 0, false);
+    }
+
+    /**
+     * Register the SwipeListener for the events in {@code events},
+     * with throttled {@link SwipeListener#onSwipe(float)}.
+     * <p>
+     * If {@code progressStep} is positive, progress is only delivered
+     * when it crosses a multiple of {@code progressStep}, for example every 0.05.
+     * If {@code oncePerFrame} is {@code true}, only the latest progress
+     * is delivered on the next frame.
+     * Either way, the exact progress is always delivered before a state change
+     * and before {@link SwipeListener#onFinish()}.
+     *
+     * @param progressStep the progress step in [0, 1], 0 for every change
+     * @param oncePerFrame {@code true} to deliver progress at most once per frame
+     */
+    public void addSwipeListener(SwipeListener listener, int events,
+            float progressStep, boolean oncePerFrame) {
+        if (progressStep < 0 || progressStep > 1) {
+            throw new IllegalArgumentException("Progress step should be in [0, 1]: "
+                    + progressStep);
+        }
+        if (listener != null && (events & EVENT_ALL) != 0) {
+            mSwipeListeners.add(listener, events & EVENT_ALL, progressStep, oncePerFrame);
+        }
+    }
+
+    /**
+     * Register the SwipeListener for the events in {@code events},
+     * delivered on {@code executor} instead of the UI thread.
+     * <p>
+     * Events are delivered one by one in order. If the listener falls behind,
+     * progress is coalesced and only the latest pending progress is delivered.
+     * State change, threshold and finish events are never dropped.
+     * {@link Executor#execute(Runnable)} is called on the UI thread,
+     * so it should not block.
+     */
+    public void addSwipeListener(SwipeListener listener, int events,
+            @NonNull Executor executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("Executor should not be null");
+        }
+        if (listener != null && (events & EVENT_ALL) != 0) {
+            mSwipeListeners.add(listener, events & EVENT_ALL, executor);
+        }
+    }
+
+    /**
+     * Set a listener to receive {@link SwipeMetrics} when each gesture ends.
+     * Metrics are only collected while a listener is set.
+     */
+    public void setSwipeMetricsListener(@Nullable SwipeMetricsListener listener) {
+        mSwipeMetricsListener = listener;
         if (listener != null) {
-            if (mSwipeListeners == null) {
-                mSwipeListeners = new ArrayList<>();
+            if (mSwipeMetricsTracker == null) {
+                mSwipeMetricsTracker = new SwipeMetricsTracker(getContext());
             }
-            mSwipeListeners.add(listener);
+        } else if (mSwipeMetricsTracker != null) {
+            mSwipeMetricsTracker.reset();
+            mSwipeMetricsTracker = null;
         }
     }
 
@@ -163,7 +324,7 @@ public class SwipeBackLayout extends ViewGroup {
      * Unregister the SwipeListener.
      */
     public void removeSwipeListener(SwipeListener listener) {
-        if (listener != null && mSwipeListeners != null) {
+        if (listener != null) {
             mSwipeListeners.remove(listener);
         }
     }
@@ -172,9 +333,7 @@ public class SwipeBackLayout extends ViewGroup {
      * Clear all SwipeListeners.
      */
     public void clearSwipeListeners() {
-        if (mSwipeListeners != null) {
-            mSwipeListeners.clear();
-        }
+        mSwipeListeners.clear();
     }
 
     /**
@@ -182,9 +341,35 @@ public class SwipeBackLayout extends ViewGroup {
      */
     public void setScrimColor(int color) {
         mScrimColor = color;
+        mScrimAlpha = -1;
+        mInvalidatedScrimAlpha = -1;
         invalidate();
     }
 
+    /**
+     * Set the renderer to draw the shadow beside the content view while layout swiped.
+     * The default one is {@link DrawableShadowRenderer}.
+     */
+    public void setShadowRenderer(ShadowRenderer renderer) {
+        if (renderer == null) {
+            throw new IllegalArgumentException("ShadowRenderer may not be null");
+        }
+        final int state = mDragHelper.getViewDragState();
+        if (state != ViewDragHelper.STATE_IDLE) {
+            mShadowRenderer.onStateChange(mContentView, mTrackingEdge, ViewDragHelper.STATE_IDLE);
+            renderer.onStateChange(mContentView, mTrackingEdge, state);
+        }
+        mShadowRenderer = renderer;
+        invalidate();
+    }
+
+    /**
+     * Return the renderer to draw the shadow.
+     */
+    public ShadowRenderer getShadowRenderer() {
+        return mShadowRenderer;
+    }
+
     /**
      * Set scroll threshold. Must be in [0, 1.0f].
      */
@@ -226,6 +411,305 @@ public class SwipeBackLayout extends ViewGroup {
         return mSwipeEnabled;
     }
 
+    /**
+     * Set whether to render the content view into a hardware layer
+     * while it is dragged or settling. Disabled by default.
+     */
+    public void setHardwareLayerEnabled(boolean enabled) {
+        mHardwareLayerEnabled = enabled;
+        if (!enabled) {
+            clearContentLayer();
+        }
+    }
+
+    /**
+     * Returns {@code true} if hardware layer is used while swiping.
+     */
+    public boolean isHardwareLayerEnabled() {
+        return mHardwareLayerEnabled;
+    }
+
+    /**
+     * Set the max pixel count of content view which can be rendered into hardware layer.
+     * Content view larger than it is always drawn without layer.
+     */
+    public void setHardwareLayerMaxPixels(int maxPixels) {
+        if (maxPixels < 0) {
+            throw new IllegalArgumentException("Max pixels should not be negative");
+        }
+        mHardwareLayerMaxPixels = maxPixels;
+    }
+
+    private void setupContentLayer() {
+        final View content = mContentView;
+        if (!mHardwareLayerEnabled || content == null || mLayerView != null) {
+            return;
+        }
+        if ((long) content.getWidth() * content.getHeight() > mHardwareLayerMaxPixels) {
+            return;
+        }
+        mLayerView = content;
+        mLayerViewOldLayerType = ViewCompat.getLayerType(content);
+        if (mLayerViewOldLayerType != ViewCompat.LAYER_TYPE_HARDWARE) {
+            ViewCompat.setLayerType(content, ViewCompat.LAYER_TYPE_HARDWARE, null);
+        }
+    }
+
+    private void clearContentLayer() {
+        final View layerView = mLayerView;
+        if (layerView == null) {
+            return;
+        }
+        mLayerView = null;
+        if (mLayerViewOldLayerType != ViewCompat.LAYER_TYPE_HARDWARE) {
+            ViewCompat.setLayerType(layerView, mLayerViewOldLayerType, null);
+        }
+    }
+
+    /**
+     * Set whether to move the content view by translation while swiping.
+     * The content view is always laid out at its resting position,
+     * so layout requests from the content while swiping stay cheap.
+     * Only works on Honeycomb and above. Disabled by default.
+     *
+     * Any swipe in progress is aborted.
+     */
+    public void setTranslationEnabled(boolean enabled) {
+        if (enabled == mDragHelper.isUseTranslation()) {
+            return;
+        }
+        mDragHelper.abort();
+        mDragHelper.setUseTranslation(enabled);
+        mContentLeft = 0;
+        mContentTop = 0;
+        if (mContentView != null) {
+            ViewCompat.setTranslationX(mContentView, 0);
+            ViewCompat.setTranslationY(mContentView, 0);
+        }
+        requestLayout();
+    }
+
+    /**
+     * Returns {@code true} if the content view is moved by translation while swiping.
+     */
+    public boolean isTranslationEnabled() {
+        return mDragHelper.isUseTranslation();
+    }
+
+    /**
+     * Set a snapshot of the previous screen. It is stretched to fill this layout,
+     * and drawn in the area revealed by the content view while swiping.
+     */
+    public void setSnapshot(@Nullable Bitmap snapshot) {
+        if (mSnapshot != snapshot) {
+            mSnapshot = snapshot;
+            invalidate();
+        }
+    }
+
+    private void drawSnapshot(Canvas canvas, View child) {
+        final Bitmap snapshot = mSnapshot;
+        final int width = getWidth();
+        final int height = getHeight();
+        if (width == 0 || height == 0) {
+            return;
+        }
+
+        // Only draw the area which isn't covered by content view
+        final int translationX = (int) ViewCompat.getTranslationX(child);
+        final Rect dst = mSnapshotDst;
+        if (mTrackingEdge == EDGE_LEFT) {
+            dst.set(0, 0, Math.min(width, child.getLeft() + translationX), height);
+        } else if (mTrackingEdge == EDGE_RIGHT) {
+            dst.set(Math.max(0, child.getRight() + translationX), 0, width, height);
+        } else {
+            return;
+        }
+        if (dst.isEmpty()) {
+            return;
+        }
+
+        final int snapshotWidth = snapshot.getWidth();
+        final int snapshotHeight = snapshot.getHeight();
+        mSnapshotSrc.set(dst.left * snapshotWidth / width, 0,
+                dst.right * snapshotWidth / width, snapshotHeight);
+        canvas.drawBitmap(snapshot, mSnapshotSrc, dst, mSnapshotPaint);
+    }
+
+    /**
+     * Set the time window in milliseconds for release velocity estimation.
+     * Only finger motion within the window before release is used.
+     */
+    public void setVelocityTimeWindow(int timeWindow) {
+        if (timeWindow <= 0) {
+            throw new IllegalArgumentException("Time window should be positive");
+        }
+        mDragHelper.setVelocityTimeWindow(timeWindow);
+    }
+
+    /**
+     * Set whether to move the content view to the predicted finger position while dragging,
+     * to reduce perceived latency. Disabled by default.
+     */
+    public void setTouchPredictionEnabled(boolean enabled) {
+        mDragHelper.setTouchPredictionEnabled(enabled);
+    }
+
+    /**
+     * Set how far ahead to predict the finger position, in milliseconds.
+     * The default value is one frame at 60 fps.
+     */
+    public void setTouchPredictionTime(int time) {
+        if (time < 0) {
+            throw new IllegalArgumentException("Prediction time should not be negative");
+        }
+        mDragHelper.setTouchPredictionTime(time);
+    }
+
+    /**
+     * Set whether to move the content view at most once per frame while dragging.
+     * If enabled, {@link SwipeListener#onSwipe(float)} is called
+     * at most once per frame while dragging. Disabled by default.
+     */
+    public void setDragCoalescingEnabled(boolean enabled) {
+        mDragHelper.setDragCoalescingEnabled(enabled);
+    }
+
+    /**
+     * Returns {@code true} if the content view is moved at most once per frame while dragging.
+     */
+    public boolean isDragCoalescingEnabled() {
+        return mDragHelper.isDragCoalescingEnabled();
+    }
+
+    /**
+     * Set how the content view settles after release.
+     * {@link #SETTLE_SCROLLER} is the default.
+     * {@link #SETTLE_SPRING} keeps the release velocity and finishes within
+     * the spring duration.
+     *
+     * @see #setSpringDuration(int)
+     */
+    public void setSettleMode(int mode) {
+        mDragHelper.setSettleMode(mode);
+    }
+
+    /**
+     * Returns {@link #SETTLE_SCROLLER} or {@link #SETTLE_SPRING}.
+     */
+    public int getSettleMode() {
+        return mDragHelper.getSettleMode();
+    }
+
+    /**
+     * Set the max duration of spring settling in milliseconds, clamped to [16, 600].
+     * The default value is 300.
+     */
+    public void setSpringDuration(int duration) {
+        mDragHelper.setSpringDuration(duration);
+    }
+
+    /**
+     * Set whether to leave edge touches to the horizontally scrollable descendant
+     * under the touch point, if it can still scroll in the swipe direction.
+     * Disabled by default.
+     */
+    public void setScrollableCheckEnabled(boolean enabled) {
+        mScrollableCheckEnabled = enabled;
+    }
+
+    /**
+     * Returns {@code true} if edge touches over scrollable descendants are left to them.
+     */
+    public boolean isScrollableCheckEnabled() {
+        return mScrollableCheckEnabled;
+    }
+
+    /**
+     * Set whether to call {@link SwipeListener#onFinish()} as soon as the content view
+     * is released to swipe out, instead of after it reaches the end.
+     * The host can finish early while the content view is still settling.
+     * Once committed, new touches are ignored and the content view is not drawn
+     * after it moves fully off-screen. Disabled by default.
+     */
+    public void setPredictiveFinishEnabled(boolean enabled) {
+        mPredictiveFinish = enabled;
+    }
+
+    /**
+     * Returns {@code true} if {@link SwipeListener#onFinish()} is called
+     * as soon as the content view is released to swipe out.
+     */
+    public boolean isPredictiveFinishEnabled() {
+        return mPredictiveFinish;
+    }
+
+    private void dispatchFinish() {
+        if (mFinished) {
+            return;
+        }
+        mFinished = true;
+        final boolean trace = SwipeTrace.isEnabled();
+        if (trace) {
+            SwipeTrace.beginSection("SwipeBack:dispatchFinish");
+        }
+        mSwipeListeners.flushSwipe(mScrollPercent);
+        mSwipeListeners.dispatchFinish();
+        if (trace) {
+            SwipeTrace.endSection();
+        }
+    }
+
+    /**
+     * Returns {@code true} if the content view is committed to finish in predictive finish mode.
+     */
+    private boolean isFinishCommitted() {
+        return mPredictiveFinish && mFinished;
+    }
+
+    /**
+     * Returns {@code true} if the content view is at its resting position.
+     * {@link #mContentLeft} stays 0 in translation mode, so the translation is checked.
+     */
+    private boolean isContentAtRest() {
+        if (mDragHelper.isUseTranslation()) {
+            return mContentView == null || (int) ViewCompat.getTranslationX(mContentView) == 0;
+        }
+        return mContentLeft == 0;
+    }
+
+    /**
+     * Returns {@code true} if the content view is committed to finish
+     * and has moved fully off-screen.
+     */
+    private boolean isContentGone(View child) {
+        if (!isFinishCommitted()) {
+            return false;
+        }
+        final int left = child.getLeft() + (int) ViewCompat.getTranslationX(child);
+        return left >= child.getWidth() || left <= -child.getWidth();
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        getViewTreeObserver().addOnScrollChangedListener(mOnScrollChangedListener);
+        mScrollableIndex.invalidate();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        getViewTreeObserver().removeOnScrollChangedListener(mOnScrollChangedListener);
+        if (mSwipeFramePosted) {
+            mSwipeFramePosted = false;
+            removeCallbacks(mSwipeFrameRunnable);
+        }
+        if (mSwipeMetricsTracker != null) {
+            mSwipeMetricsTracker.reset();
+        }
+    }
+
     @Override
     protected LayoutParams generateDefaultLayoutParams() {
         return new MarginLayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.MATCH_PARENT);
@@ -254,6 +738,20 @@ public class SwipeBackLayout extends ViewGroup {
 
     @Override
     protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        if (!SwipeTrace.isEnabled()) {
+            onLayoutInternal();
+            return;
+        }
+        SwipeTrace.beginSection("SwipeBack:onLayout");
+        try {
+            onLayoutInternal();
+        } finally {
+            SwipeTrace.endSection();
+        }
+    }
+
+    private void onLayoutInternal() {
+        mScrollableIndex.invalidate();
         final MarginLayoutParams lp = (MarginLayoutParams) mContentView.getLayoutParams();
         final int left = getPaddingLeft() + lp.leftMargin + mContentLeft;
         final int top = getPaddingTop() + lp.topMargin + mContentTop;
@@ -262,43 +760,127 @@ public class SwipeBackLayout extends ViewGroup {
                 top + mContentView.getMeasuredHeight());
     }
 
+    /**
+     * Invalidate the region which changed when the content view
+     * moved horizontally from {@code oldLeft} to {@code newLeft}.
+     * The whole scrim strip is invalidated only if the scrim or shadow alpha changed,
+     * otherwise only the moved shadow band and the vacated area.
+     */
+    private void invalidateSwipeRegion(int oldLeft, int newLeft) {
+        final float opacity = 1 - mScrollPercent;
+        final int scrimAlpha = (int) (((mScrimColor & 0xff000000) >>> 24) * opacity);
+        final int shadowAlpha = (int) (FULL_ALPHA * opacity);
+        final boolean alphaChanged = scrimAlpha != mInvalidatedScrimAlpha
+                || shadowAlpha != mInvalidatedShadowAlpha;
+        mInvalidatedScrimAlpha = scrimAlpha;
+        mInvalidatedShadowAlpha = shadowAlpha;
+
+        if (oldLeft == newLeft && !alphaChanged) {
+            return;
+        }
+
+        final int width = getWidth();
+        final int height = getHeight();
+        final int shadowWidth = mShadowRenderer.getShadowWidth(mTrackingEdge);
+        if (mTrackingEdge == EDGE_LEFT) {
+            final int left = alphaChanged ? 0 : Math.min(oldLeft, newLeft) - shadowWidth;
+            final int right = Math.max(oldLeft, newLeft);
+            invalidate(Math.max(0, left), 0, Math.min(width, right), height);
+        } else if (mTrackingEdge == EDGE_RIGHT) {
+            final int contentWidth = mContentView.getWidth();
+            final int left = Math.min(oldLeft, newLeft) + contentWidth;
+            final int right = alphaChanged ? width
+                    : Math.max(oldLeft, newLeft) + contentWidth + shadowWidth;
+            invalidate(Math.max(0, left), 0, Math.min(width, right), height);
+        } else {
+            invalidate();
+        }
+    }
+
     private void drawShadow(Canvas canvas, View child) {
+        if (mTrackingEdge == EDGE_NONE) {
+            return;
+        }
+        final boolean trace = SwipeTrace.isEnabled();
+        if (trace) {
+            SwipeTrace.beginSection("SwipeBack:drawShadow");
+        }
         final Rect childRect = mTempRect;
         child.getHitRect(childRect);
-
-        if ((mEdgeFlag & EDGE_LEFT) != 0) {
-            mShadowLeft.setBounds(childRect.left - mShadowLeft.getIntrinsicWidth(), childRect.top,
-                    childRect.left, childRect.bottom);
-            mShadowLeft.setAlpha((int) (mScrimOpacity * FULL_ALPHA));
-            mShadowLeft.draw(canvas);
+        mShadowRenderer.draw(canvas, child, mTrackingEdge, childRect, mScrimOpacity);
+        if (trace) {
+            SwipeTrace.endSection();
         }
+    }
 
-        if ((mEdgeFlag & EDGE_RIGHT) != 0) {
-            mShadowRight.setBounds(childRect.right, childRect.top,
-                    childRect.right + mShadowRight.getIntrinsicWidth(), childRect.bottom);
-            mShadowRight.setAlpha((int) (mScrimOpacity * FULL_ALPHA));
-            mShadowRight.draw(canvas);
+    private void drawScrim(Canvas canvas, View child) {
+        if (!SwipeTrace.isEnabled()) {
+            drawScrimInternal(canvas, child);
+            return;
+        }
+        SwipeTrace.beginSection("SwipeBack:drawScrim");
+        try {
+            drawScrimInternal(canvas, child);
+        } finally {
+            SwipeTrace.endSection();
         }
     }
 
-    private void drawScrim(Canvas canvas, View child) {
+    private void drawScrimInternal(Canvas canvas, View child) {
         final int baseAlpha = (mScrimColor & 0xff000000) >>> 24;
         final int alpha = (int) (baseAlpha * mScrimOpacity);
-        final int color = alpha << 24 | (mScrimColor & 0xffffff);
+        if (alpha == 0) {
+            return;
+        }
+        if (alpha != mScrimAlpha) {
+            mScrimAlpha = alpha;
+            mScrimPaint.setColor(alpha << 24 | (mScrimColor & 0xffffff));
+        }
 
+        // Only draw the area which isn't covered by content view
+        final int translationX = (int) ViewCompat.getTranslationX(child);
         if (mTrackingEdge == EDGE_LEFT) {
-            canvas.clipRect(0, 0, child.getLeft(), getHeight());
+            final int right = child.getLeft() + translationX;
+            if (right > 0) {
+                canvas.drawRect(0, 0, right, getHeight(), mScrimPaint);
+            }
         } else if (mTrackingEdge == EDGE_RIGHT) {
-            canvas.clipRect(child.getRight(), 0, getRight(), getHeight());
+            final int left = child.getRight() + translationX;
+            final int width = getWidth();
+            if (left < width) {
+                canvas.drawRect(left, 0, width, getHeight(), mScrimPaint);
+            }
         }
-        canvas.drawColor(color);
     }
 
     @Override
     protected boolean drawChild(Canvas canvas, View child, long drawingTime) {
+        if (!SwipeTrace.isEnabled()) {
+            return drawChildInternal(canvas, child, drawingTime);
+        }
+        SwipeTrace.beginSection("SwipeBack:drawChild");
+        try {
+            return drawChildInternal(canvas, child, drawingTime);
+        } finally {
+            SwipeTrace.endSection();
+        }
+    }
+
+    private boolean drawChildInternal(Canvas canvas, View child, long drawingTime) {
         final boolean drawContent = child == mContentView;
 
-        final boolean ret = super.drawChild(canvas, child, drawingTime);
+        if (mSnapshot != null && drawContent
+                && mDragHelper.getViewDragState() != ViewDragHelper.STATE_IDLE) {
+            drawSnapshot(canvas, child);
+        }
+
+        final boolean ret;
+        if (drawContent && isContentGone(child)) {
+            // Nothing visible, skip drawing the content view
+            ret = false;
+        } else {
+            ret = super.drawChild(canvas, child, drawingTime);
+        }
         if (mScrimOpacity > 0 && drawContent
                 && mDragHelper.getViewDragState() != ViewDragHelper.STATE_IDLE) {
             drawScrim(canvas, child);
@@ -315,9 +897,35 @@ public class SwipeBackLayout extends ViewGroup {
         }
     }
 
+    /**
+     * Returns {@code true} if a gesture starting at the point
+     * can't touch any tracking edge and nothing is settling.
+     */
+    private boolean shouldIgnoreGesture(float x, float y) {
+        if (mDragHelper.getViewDragState() != ViewDragHelper.STATE_IDLE) {
+            return false;
+        }
+        int edges = mDragHelper.getEdgesTouched((int) x, (int) y) & mEdgeFlag;
+        if (edges != 0 && mScrollableCheckEnabled) {
+            if (mScrollableIndex.isDirty()) {
+                mScrollableIndex.rebuild(mContentView);
+            }
+            // Swiping from left edge moves finger right, which scrolls children to left
+            if ((edges & EDGE_LEFT) != 0
+                    && mScrollableIndex.canScrollHorizontally((int) x, (int) y, -1)) {
+                edges &= ~EDGE_LEFT;
+            }
+            if ((edges & EDGE_RIGHT) != 0
+                    && mScrollableIndex.canScrollHorizontally((int) x, (int) y, 1)) {
+                edges &= ~EDGE_RIGHT;
+            }
+        }
+        return edges == 0;
+    }
+
     @Override
     public boolean onInterceptTouchEvent(MotionEvent event) {
-        if (!mSwipeEnabled) {
+        if (!mSwipeEnabled || mNestedDragging || isFinishCommitted()) {
             return false;
         }
 
@@ -325,9 +933,18 @@ public class SwipeBackLayout extends ViewGroup {
         final float y = event.getY();
 
         if (event.getAction() == MotionEvent.ACTION_DOWN) {
+            mIgnoreGesture = shouldIgnoreGesture(x, y);
+            if (mIgnoreGesture) {
+                return false;
+            }
+            if (mSwipeMetricsTracker != null) {
+                mSwipeMetricsTracker.onDown(event.getEventTime());
+            }
             mSwipeVertically = false;
             mStartX = x;
             mStartY = y;
+        } else if (mIgnoreGesture) {
+            return false;
         } else if (!mSwipeVertically) {
             final float dx = Math.abs(mStartX - x);
             final float dy = Math.abs(mStartY - y);
@@ -347,7 +964,17 @@ public class SwipeBackLayout extends ViewGroup {
 
     @Override
     public boolean onTouchEvent(MotionEvent event) {
-        if (!mSwipeEnabled) {
+        if (!mSwipeEnabled || mNestedDragging || isFinishCommitted()) {
+            return false;
+        }
+
+        if (event.getAction() == MotionEvent.ACTION_DOWN) {
+            mIgnoreGesture = shouldIgnoreGesture(event.getX(), event.getY());
+            if (!mIgnoreGesture && mSwipeMetricsTracker != null) {
+                mSwipeMetricsTracker.onDown(event.getEventTime());
+            }
+        }
+        if (mIgnoreGesture) {
             return false;
         }
 
@@ -359,6 +986,93 @@ public class SwipeBackLayout extends ViewGroup {
         return true;
     }
 
+    @Override
+    public boolean onStartNestedScroll(View child, View target, int nestedScrollAxes) {
+        return mSwipeEnabled && !isFinishCommitted() && mContentView != null
+                && (mEdgeFlag & (EDGE_LEFT | EDGE_RIGHT)) != 0
+                && (nestedScrollAxes & ViewCompat.SCROLL_AXIS_HORIZONTAL) != 0
+                && mDragHelper.getViewDragState() == ViewDragHelper.STATE_IDLE;
+    }
+
+    @Override
+    public void onNestedScrollAccepted(View child, View target, int nestedScrollAxes) {
+        mNestedScrollingParentHelper.onNestedScrollAccepted(child, target, nestedScrollAxes);
+        mNestedDragging = false;
+    }
+
+    @Override
+    public void onNestedPreScroll(View target, int dx, int dy, int[] consumed) {
+        if (!mNestedDragging || dx == 0) {
+            return;
+        }
+
+        // Move the content view back before the child scrolls
+        final int offset = mContentView.getLeft() + (int) ViewCompat.getTranslationX(mContentView);
+        int consumedX = 0;
+        if (mTrackingEdge == EDGE_LEFT && dx > 0 && offset > 0) {
+            consumedX = Math.min(dx, offset);
+        } else if (mTrackingEdge == EDGE_RIGHT && dx < 0 && offset < 0) {
+            consumedX = Math.max(dx, offset);
+        }
+        if (consumedX != 0) {
+            mDragHelper.dragCapturedViewBy(-consumedX, 0);
+            consumed[0] = consumedX;
+        }
+    }
+
+    @Override
+    public void onNestedScroll(View target, int dxConsumed, int dyConsumed,
+            int dxUnconsumed, int dyUnconsumed) {
+        if (dxUnconsumed == 0) {
+            return;
+        }
+
+        if (!mNestedDragging) {
+            // The child can't scroll any more, start swiping.
+            // Scrolling to left means finger moving right, which swipes from left edge.
+            final int edge = dxUnconsumed < 0 ? EDGE_LEFT : EDGE_RIGHT;
+            if ((mEdgeFlag & edge) == 0
+                    || mDragHelper.getViewDragState() != ViewDragHelper.STATE_IDLE) {
+                return;
+            }
+            mTrackingEdge = edge;
+            mNestedDragging = true;
+            mDragHelper.captureChildView(mContentView, ViewDragHelper.INVALID_POINTER);
+        }
+        mDragHelper.dragCapturedViewBy(-dxUnconsumed, 0);
+    }
+
+    @Override
+    public boolean onNestedPreFling(View target, float velocityX, float velocityY) {
+        if (!mNestedDragging) {
+            return false;
+        }
+        // Fling velocity is scrolling velocity, reverse it for finger velocity
+        mNestedDragging = false;
+        mDragHelper.releaseCapturedView(-velocityX, 0);
+        return true;
+    }
+
+    @Override
+    public boolean onNestedFling(View target, float velocityX, float velocityY,
+            boolean consumed) {
+        return false;
+    }
+
+    @Override
+    public void onStopNestedScroll(View child) {
+        mNestedScrollingParentHelper.onStopNestedScroll(child);
+        if (mNestedDragging) {
+            mNestedDragging = false;
+            mDragHelper.releaseCapturedView(0, 0);
+        }
+    }
+
+    @Override
+    public int getNestedScrollAxes() {
+        return mNestedScrollingParentHelper.getNestedScrollAxes();
+    }
+
     private class ViewDragCallback extends ViewDragHelper.Callback {
 
         private boolean mIsScrollOverValid;
@@ -372,74 +1086,96 @@ public class SwipeBackLayout extends ViewGroup {
                 } else if (mDragHelper.isEdgeTouched(EDGE_RIGHT, i)) {
                     mTrackingEdge = EDGE_RIGHT;
                 }
-
-                mIsScrollOverValid = true;
             }
             return ret;
         }
 
+        @Override
+        public void onViewCaptured(View capturedChild, int activePointerId) {
+            mIsScrollOverValid = true;
+            if (mSwipeMetricsTracker != null) {
+                mSwipeMetricsTracker.onCapture();
+            }
+        }
+
         @Override
         public int getViewHorizontalDragRange(View child) {
-            return mEdgeFlag & (EDGE_LEFT | EDGE_RIGHT);
+            int shadowWidth = 0;
+            if ((mEdgeFlag & EDGE_LEFT) != 0) {
+                shadowWidth = mShadowRenderer.getShadowWidth(EDGE_LEFT);
+            }
+            if ((mEdgeFlag & EDGE_RIGHT) != 0) {
+                shadowWidth = Math.max(shadowWidth, mShadowRenderer.getShadowWidth(EDGE_RIGHT));
+            } else if ((mEdgeFlag & EDGE_LEFT) == 0) {
+                return 0;
+            }
+            return child.getWidth() + shadowWidth;
         }
 
         @Override
         public void onViewPositionChanged(View changedView, int left, int top, int dx, int dy) {
             if (mTrackingEdge == EDGE_LEFT) {
                 mScrollPercent = Math.abs((float) left
-                        / (mContentView.getWidth() + mShadowLeft.getIntrinsicWidth()));
+                        / (mContentView.getWidth() + mShadowRenderer.getShadowWidth(EDGE_LEFT)));
             } else if (mTrackingEdge == EDGE_RIGHT) {
                 mScrollPercent = Math.abs((float) left
-                        / (mContentView.getWidth() + mShadowRight.getIntrinsicWidth()));
+                        / (mContentView.getWidth() + mShadowRenderer.getShadowWidth(EDGE_RIGHT)));
             }
-            mContentLeft = left;
-            mContentTop = top;
-            invalidate();
+            if (!mDragHelper.isUseTranslation()) {
+                mContentLeft = left;
+                mContentTop = top;
+            }
+            invalidateSwipeRegion(left - dx, left);
             if (mScrollPercent < mScrollThreshold && !mIsScrollOverValid) {
                 mIsScrollOverValid = true;
             }
 
             // Callback
-            if (mSwipeListeners != null && !mSwipeListeners.isEmpty()) {
-                // onSwipe
-                for (SwipeListener listener : mSwipeListeners) {
-                    listener.onSwipe(mScrollPercent);
-                }
-                // onSwipeOverThreshold
-                if (mDragHelper.getViewDragState() == ViewDragHelper.STATE_DRAGGING
-                        && mScrollPercent >= mScrollThreshold && mIsScrollOverValid) {
-                    mIsScrollOverValid = false;
-                    for (SwipeListener listener : mSwipeListeners) {
-                        listener.onSwipeOverThreshold();
-                    }
-                }
+            final boolean trace = SwipeTrace.isEnabled();
+            if (trace) {
+                SwipeTrace.beginSection("SwipeBack:dispatchSwipe");
+            }
+            if (mSwipeListeners.dispatchSwipe(mScrollPercent) && !mSwipeFramePosted) {
+                mSwipeFramePosted = true;
+                ViewCompat.postOnAnimation(SwipeBackLayout.this, mSwipeFrameRunnable);
+            }
+            if (mSwipeListeners.wants(EVENT_THRESHOLD)
+                    && mDragHelper.getViewDragState() == ViewDragHelper.STATE_DRAGGING
+                    && mScrollPercent >= mScrollThreshold && mIsScrollOverValid) {
+                mIsScrollOverValid = false;
+                mSwipeListeners.dispatchSwipeOverThreshold();
+            }
+            if (trace) {
+                SwipeTrace.endSection();
             }
 
             if (mScrollPercent >= 1) {
-                mFinished = true;
-                // Callback
-                if (mSwipeListeners != null && !mSwipeListeners.isEmpty()) {
-                    for (SwipeListener listener : mSwipeListeners) {
-                        listener.onFinish();
-                    }
-                }
+                dispatchFinish();
             }
         }
 
         @Override
         public void onViewReleased(View releasedChild, float xvel, float yvel) {
+            if (mSwipeMetricsTracker != null) {
+                mSwipeMetricsTracker.onRelease(xvel);
+            }
+
             final int childWidth = releasedChild.getWidth();
 
             int left = 0;
             if (mTrackingEdge == EDGE_LEFT) {
                 left = xvel > 0 || xvel == 0 && mScrollPercent > mScrollThreshold ? childWidth
-                        + mShadowLeft.getIntrinsicWidth() + OVER_SCROLL_DISTANCE : 0;
+                        + mShadowRenderer.getShadowWidth(EDGE_LEFT) + OVER_SCROLL_DISTANCE : 0;
             } else if (mTrackingEdge == EDGE_RIGHT) {
                 left = xvel < 0 || xvel == 0 && mScrollPercent > mScrollThreshold ? -(childWidth
-                        + mShadowLeft.getIntrinsicWidth() + OVER_SCROLL_DISTANCE) : 0;
+                        + mShadowRenderer.getShadowWidth(EDGE_RIGHT) + OVER_SCROLL_DISTANCE) : 0;
             }
 
             mDragHelper.settleCapturedViewAt(left, 0);
+            if (left != 0 && mPredictiveFinish) {
+                // The outcome is decided, let the host finish now
+                dispatchFinish();
+            }
             invalidate();
         }
 
@@ -467,16 +1203,26 @@ public class SwipeBackLayout extends ViewGroup {
 
         @Override
         public void onViewDragStateChanged(int state) {
+            mShadowRenderer.onStateChange(mContentView, mTrackingEdge, state);
+
             // Callback
-            if (mSwipeListeners != null && !mSwipeListeners.isEmpty()) {
-                for (SwipeListener listener : mSwipeListeners) {
-                    listener.onStateChange(mTrackingEdge, state);
-                }
+            final boolean trace = SwipeTrace.isEnabled();
+            if (trace) {
+                SwipeTrace.setCounter("SwipeBack:state", state);
+                SwipeTrace.beginSection("SwipeBack:dispatchStateChange");
+            }
+            mSwipeListeners.flushSwipe(mScrollPercent);
+            mSwipeListeners.dispatchStateChange(mTrackingEdge, state);
+            if (trace) {
+                SwipeTrace.endSection();
             }
 
             if (state == ViewDragHelper.STATE_IDLE) {
                 // Reset mTrackingEdge
                 mTrackingEdge = EDGE_NONE;
+                clearContentLayer();
+            } else {
+                setupContentLayer();
             }
 
             if (state == ViewDragHelper.STATE_DRAGGING) {
@@ -484,10 +1230,30 @@ public class SwipeBackLayout extends ViewGroup {
             } else if (state == ViewDragHelper.STATE_IDLE) {
                 requestDisallowInterceptTouchEvent(false);
             }
+
+            if (mSwipeMetricsTracker != null) {
+                final SwipeMetrics metrics = mSwipeMetricsTracker.onStateChange(state, mFinished);
+                if (metrics != null && mSwipeMetricsListener != null) {
+                    mSwipeMetricsListener.onSwipeMetrics(metrics);
+                }
+            }
+
+            if (state == ViewDragHelper.STATE_IDLE && isContentAtRest()) {
+                // The host didn't finish, the content view is back
+                mFinished = false;
+            }
         }
     }
 
-    public interface SwipeListener {
+    public interface SwipeMetricsListener {
+
+        /**
+         * Called when a gesture ends and the content view is settled.
+         */
+        void onSwipeMetrics(SwipeMetrics metrics);
+    }
+
+    public interface SwipeListener extends SwipeEventListener {
 
         /**
          * Called when scroll percent changed.
@@ -505,7 +1271,10 @@ public class SwipeBackLayout extends ViewGroup {
         void onSwipeOverThreshold();
 
         /**
-         * Called when the content view swiped to the end.
+         * Called when the content view swiped to the end, or as soon as
+         * it is released to swipe out in predictive finish mode.
+         *
+         * @see SwipeBackLayout#setPredictiveFinishEnabled(boolean)
          */
         void onFinish();
     }
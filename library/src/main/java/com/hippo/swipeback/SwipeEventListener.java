@@ -0,0 +1,34 @@
+/*
+ * Copyright 2017 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hippo.swipeback;
+
+/**
+ * The events of {@link SwipeBackLayout.SwipeListener}, which doesn't depend on Android.
+ * {@link SwipeListenerList} and {@link ExecutorSwipeListener} dispatch them,
+ * so they can be built and benchmarked without the Android SDK.
+ */
+interface SwipeEventListener {
+
+    void onSwipe(float percent);
+
+    void onStateChange(int edge, int state);
+
+    void onSwipeOverThreshold();
+
+    void onFinish();
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright 2017 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hippo.swipeback;
+
+import java.util.concurrent.Executor;
+
+/**
+ * A copy-on-write list of {@link SwipeEventListener} with event masks.
+ * Dispatch iterates an array snapshot without allocation, so listeners can be
+ * added or removed during dispatch. A removed listener may still receive
+ * the event being dispatched.
+ *
+ * <p>Progress can be throttled per listener. A listener with a progress step only gets
+ * progress which is in another step than the last delivered one. A listener
+ * with per frame delivery only gets the latest progress in {@link #dispatchSwipeFrame(float)}.
+ * {@link #flushSwipe(float)} delivers the exact progress to throttled listeners
+ * which haven't got it yet.</p>
+ */
+final class SwipeListenerList {
+
+    static final int EVENT_SWIPE = 0x1;
+    static final int EVENT_STATE = 0x2;
+    static final int EVENT_THRESHOLD = 0x4;
+    static final int EVENT_FINISH = 0x8;
+    static final int EVENT_ALL = EVENT_SWIPE | EVENT_STATE | EVENT_THRESHOLD | EVENT_FINISH;
+
+    private static final Entry[] EMPTY_ENTRIES = {};
+
+    private Entry[] mEntries = EMPTY_ENTRIES;
+    // Union of all masks
+    private int mEventMask;
+
+    private static final class Entry {
+
+        // The registered listener, used to remove the entry
+        final SwipeEventListener key;
+        final SwipeEventListener listener;
+        final int mask;
+        // Min progress change to deliver, 0 for every change
+        final float step;
+        final boolean perFrame;
+        // Last delivered progress
+        float lastPercent = Float.NaN;
+        // True if it waits for the next frame
+        boolean pending;
+
+        Entry(SwipeEventListener key, SwipeEventListener listener,
+                int mask, float step, boolean perFrame) {
+            this.key = key;
+            this.listener = listener;
+            this.mask = mask;
+            this.step = step;
+            this.perFrame = perFrame;
+        }
+
+        boolean isThrottled() {
+            return step > 0 || perFrame;
+        }
+
+        void deliverSwipe(float percent) {
+            if (step > 0 && !Float.isNaN(lastPercent)
+                    && (int) Math.floor(percent / step) == (int) Math.floor(lastPercent / step)) {
+                return;
+            }
+            lastPercent = percent;
+            listener.onSwipe(percent);
+        }
+    }
+
+    void add(SwipeEventListener listener, int mask) {
+        add(listener, mask, 0, false);
+    }
+
+    /**
+     * @param step min progress change to deliver, 0 for every change
+     * @param perFrame true to deliver progress at most once per frame
+     */
+    void add(SwipeEventListener listener, int mask, float step, boolean perFrame) {
+        add(new Entry(listener, listener, mask, step, perFrame));
+    }
+
+    /**
+     * Add a listener which delivers events on the executor.
+     */
+    void add(SwipeEventListener listener, int mask, Executor executor) {
+        add(new Entry(listener, new ExecutorSwipeListener(listener, executor), mask, 0, false));
+    }
+
+    private void add(Entry entry) {
+        final int size = mEntries.length;
+        final Entry[] entries = new Entry[size + 1];
+        System.arraycopy(mEntries, 0, entries, 0, size);
+        entries[size] = entry;
+        mEntries = entries;
+        mEventMask |= entry.mask;
+    }
+
+    /**
+     * Remove the first occurrence of the listener.
+     */
+    boolean remove(SwipeEventListener listener) {
+        final Entry[] oldEntries = mEntries;
+        final int size = oldEntries.length;
+        for (int i = 0; i < size; i++) {
+            if (oldEntries[i].key.equals(listener)) {
+                if (size == 1) {
+                    clear();
+                    return true;
+                }
+                final Entry[] entries = new Entry[size - 1];
+                System.arraycopy(oldEntries, 0, entries, 0, i);
+                System.arraycopy(oldEntries, i + 1, entries, i, size - i - 1);
+                int eventMask = 0;
+                for (Entry entry : entries) {
+                    eventMask |= entry.mask;
+                }
+                mEntries = entries;
+                mEventMask = eventMask;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void clear() {
+        mEntries = EMPTY_ENTRIES;
+        mEventMask = 0;
+    }
+
+    int size() {
+        return mEntries.length;
+    }
+
+    /**
+     * Returns {@code true} if any listener wants any of the events.
+     */
+    boolean wants(int events) {
+        return (mEventMask & events) != 0;
+    }
+
+    /**
+     * Returns {@code true} if a listener waits for {@link #dispatchSwipeFrame(float)}.
+     */
+    boolean dispatchSwipe(float percent) {
+        if ((mEventMask & EVENT_SWIPE) == 0) {
+            return false;
+        }
+        boolean needsFrame = false;
+        final Entry[] entries = mEntries;
+        for (int i = 0, n = entries.length; i < n; i++) {
+            final Entry entry = entries[i];
+            if ((entry.mask & EVENT_SWIPE) == 0) {
+                continue;
+            }
+            if (entry.perFrame) {
+                entry.pending = true;
+                needsFrame = true;
+            } else {
+                entry.deliverSwipe(percent);
+            }
+        }
+        return needsFrame;
+    }
+
+    /**
+     * Deliver the latest progress to per frame listeners.
+     */
+    void dispatchSwipeFrame(float percent) {
+        if ((mEventMask & EVENT_SWIPE) == 0) {
+            return;
+        }
+        final Entry[] entries = mEntries;
+        for (int i = 0, n = entries.length; i < n; i++) {
+            final Entry entry = entries[i];
+            if (entry.pending) {
+                entry.pending = false;
+                entry.deliverSwipe(percent);
+            }
+        }
+    }
+
+    /**
+     * Deliver the exact progress to throttled listeners if they haven't got it.
+     */
+    void flushSwipe(float percent) {
+        if ((mEventMask & EVENT_SWIPE) == 0) {
+            return;
+        }
+        final Entry[] entries = mEntries;
+        for (int i = 0, n = entries.length; i < n; i++) {
+            final Entry entry = entries[i];
+            if ((entry.mask & EVENT_SWIPE) != 0 && entry.isThrottled()
+                    && (entry.pending || !Float.isNaN(entry.lastPercent))) {
+                entry.pending = false;
+                if (entry.lastPercent != percent) {
+                    entry.lastPercent = percent;
+                    entry.listener.onSwipe(percent);
+                }
+            }
+        }
+    }
+
+    void dispatchStateChange(int edge, int state) {
+        if ((mEventMask & EVENT_STATE) == 0) {
+            return;
+        }
+        final Entry[] entries = mEntries;
+        for (int i = 0, n = entries.length; i < n; i++) {
+            final Entry entry = entries[i];
+            if ((entry.mask & EVENT_STATE) != 0) {
+                entry.listener.onStateChange(edge, state);
+            }
+        }
+    }
+
+    void dispatchSwipeOverThreshold() {
+        if ((mEventMask & EVENT_THRESHOLD) == 0) {
+            return;
+        }
+        final Entry[] entries = mEntries;
+        for (int i = 0, n = entries.length; i < n; i++) {
+            final Entry entry = entries[i];
+            if ((entry.mask & EVENT_THRESHOLD) != 0) {
+                entry.listener.onSwipeOverThreshold();
+            }
+        }
+    }
+
+    void dispatchFinish() {
+        if ((mEventMask & EVENT_FINISH) == 0) {
+            return;
+        }
+        final Entry[] entries = mEntries;
+        for (int i = 0, n = entries.length; i < n; i++) {
+            final Entry entry = entries[i];
+            if ((entry.mask & EVENT_FINISH) != 0) {
+                entry.listener.onFinish();
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2017 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hippo.swipeback;
+
+import java.util.Arrays;
+
+/**
+ * Performance metrics of a swipe gesture, from capture to the content view settled.
+ * Frame metrics are only available on API 16 and above.
+ *
+ * @see SwipeBackLayout#setSwipeMetricsListener(SwipeBackLayout.SwipeMetricsListener)
+ */
+public final class SwipeMetrics {
+
+    private final long mCaptureLatency;
+    private final float[] mDragFrameDurations;
+    private final int mDragDroppedFrames;
+    private final float[] mSettleFrameDurations;
+    private final int mSettleDroppedFrames;
+    private final long mSettleDuration;
+    private final float mReleaseVelocity;
+    private final boolean mFinished;
+
+    SwipeMetrics(long captureLatency, float[] dragFrameDurations, int dragDroppedFrames,
+            float[] settleFrameDurations, int settleDroppedFrames, long settleDuration,
+            float releaseVelocity, boolean finished) {
+        mCaptureLatency = captureLatency;
+        mDragFrameDurations = dragFrameDurations;
+        mDragDroppedFrames = dragDroppedFrames;
+        mSettleFrameDurations = settleFrameDurations;
+        mSettleDroppedFrames = settleDroppedFrames;
+        mSettleDuration = settleDuration;
+        mReleaseVelocity = releaseVelocity;
+        mFinished = finished;
+    }
+
+    /**
+     * Returns milliseconds from ACTION_DOWN to the content view captured,
+     * or -1 if the gesture didn't start with a touch.
+     */
+    public long getCaptureLatency() {
+        return mCaptureLatency;
+    }
+
+    /**
+     * Returns the number of frames while dragging.
+     */
+    public int getDragFrameCount() {
+        return mDragFrameDurations.length;
+    }
+
+    /**
+     * Returns a copy of frame durations in milliseconds while dragging.
+     */
+    public float[] getDragFrameDurations() {
+        return mDragFrameDurations.clone();
+    }
+
+    /**
+     * Returns the number of vsync intervals without a frame while dragging.
+     */
+    public int getDragDroppedFrames() {
+        return mDragDroppedFrames;
+    }
+
+    /**
+     * Returns the number of frames while settling.
+     */
+    public int getSettleFrameCount() {
+        return mSettleFrameDurations.length;
+    }
+
+    /**
+     * Returns a copy of frame durations in milliseconds while settling.
+     */
+    public float[] getSettleFrameDurations() {
+        return mSettleFrameDurations.clone();
+    }
+
+    /**
+     * Returns the number of vsync intervals without a frame while settling.
+     */
+    public int getSettleDroppedFrames() {
+        return mSettleDroppedFrames;
+    }
+
+    /**
+     * Returns milliseconds from release to the content view settled,
+     * 0 if it didn't settle.
+     */
+    public long getSettleDuration() {
+        return mSettleDuration;
+    }
+
+    /**
+     * Returns horizontal release velocity in pixels per second.
+     */
+    public float getReleaseVelocity() {
+        return mReleaseVelocity;
+    }
+
+    /**
+     * Returns {@code true} if the gesture finished, {@code false} if it was cancelled.
+     */
+    public boolean isFinished() {
+        return mFinished;
+    }
+
+    @Override
+    public String toString() {
+        return "SwipeMetrics{captureLatency=" + mCaptureLatency
+                + ", dragFrames=" + mDragFrameDurations.length
+                + ", dragDroppedFrames=" + mDragDroppedFrames
+                + ", settleFrames=" + mSettleFrameDurations.length
+                + ", settleDroppedFrames=" + mSettleDroppedFrames
+                + ", settleDuration=" + mSettleDuration
+                + ", releaseVelocity=" + mReleaseVelocity
+                + ", finished=" + mFinished
+                + ", dragFrameDurations=" + Arrays.toString(mDragFrameDurations)
+                + ", settleFrameDurations=" + Arrays.toString(mSettleFrameDurations)
+                + "}";
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2017 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hippo.swipeback;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.os.Build;
+import android.os.SystemClock;
+import android.view.Choreographer;
+import android.view.WindowManager;
+import java.util.Arrays;
+
+/**
+ * SwipeMetricsTracker collects {@link SwipeMetrics} of a gesture.
+ * Frames are counted by a frame callback while dragging or settling, on API 16 and above.
+ */
+final class SwipeMetricsTracker {
+
+    private static final int PHASE_IDLE = 0;
+    private static final int PHASE_DRAGGING = 1;
+    private static final int PHASE_SETTLING = 2;
+
+    private static final float DEFAULT_REFRESH_RATE = 60.0f;
+    private static final float[] EMPTY_FRAMES = {};
+
+    private final long mFrameIntervalNanos;
+    private final FrameTicker mFrameTicker;
+
+    private int mPhase = PHASE_IDLE;
+    private long mDownTime = -1;
+    private long mCaptureLatency = -1;
+    private float mReleaseVelocity;
+    private long mSettleStartTime;
+    private long mSettleDuration;
+    private long mLastFrameTime;
+    private final Frames mDragFrames = new Frames();
+    private final Frames mSettleFrames = new Frames();
+
+    private static final class Frames {
+
+        float[] durations = new float[64];
+        int size;
+        int dropped;
+
+        void add(float duration, int droppedFrames) {
+            if (size == durations.length) {
+                durations = Arrays.copyOf(durations, size * 2);
+            }
+            durations[size++] = duration;
+            dropped += droppedFrames;
+        }
+
+        float[] toArray() {
+            return size == 0 ? EMPTY_FRAMES : Arrays.copyOf(durations, size);
+        }
+
+        void clear() {
+            size = 0;
+            dropped = 0;
+        }
+    }
+
+    SwipeMetricsTracker(Context context) {
+        float refreshRate = ((WindowManager) context.getSystemService(Context.WINDOW_SERVICE))
+                .getDefaultDisplay().getRefreshRate();
+        if (refreshRate < 1.0f) {
+            refreshRate = DEFAULT_REFRESH_RATE;
+        }
+        mFrameIntervalNanos = (long) (1000000000L / refreshRate);
+        mFrameTicker = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN
+                ? new FrameTicker() : null;
+    }
+
+    /**
+     * Called on ACTION_DOWN which may start a gesture.
+     *
+     * @param eventTime the event time in {@link SystemClock#uptimeMillis()} time base
+     */
+    void onDown(long eventTime) {
+        if (mPhase == PHASE_IDLE) {
+            mDownTime = eventTime;
+        }
+    }
+
+    void onCapture() {
+        if (mDownTime >= 0) {
+            mCaptureLatency = SystemClock.uptimeMillis() - mDownTime;
+            mDownTime = -1;
+        }
+    }
+
+    void onRelease(float xvel) {
+        mReleaseVelocity = xvel;
+    }
+
+    /**
+     * Returns the metrics of the gesture if it ends.
+     */
+    SwipeMetrics onStateChange(int state, boolean finished) {
+        if (state == ViewDragHelper.STATE_DRAGGING) {
+            mPhase = PHASE_DRAGGING;
+            startFrames();
+        } else if (state == ViewDragHelper.STATE_SETTLING) {
+            mPhase = PHASE_SETTLING;
+            mSettleStartTime = SystemClock.uptimeMillis();
+            startFrames();
+        } else if (mPhase != PHASE_IDLE) {
+            if (mPhase == PHASE_SETTLING) {
+                mSettleDuration = SystemClock.uptimeMillis() - mSettleStartTime;
+            }
+            final SwipeMetrics metrics = new SwipeMetrics(mCaptureLatency,
+                    mDragFrames.toArray(), mDragFrames.dropped,
+                    mSettleFrames.toArray(), mSettleFrames.dropped,
+                    mSettleDuration, mReleaseVelocity, finished);
+            reset();
+            return metrics;
+        }
+        return null;
+    }
+
+    /**
+     * Stop tracking and drop the current gesture.
+     */
+    void reset() {
+        if (mFrameTicker != null) {
+            mFrameTicker.stop();
+        }
+        mPhase = PHASE_IDLE;
+        mDownTime = -1;
+        mCaptureLatency = -1;
+        mReleaseVelocity = 0;
+        mSettleDuration = 0;
+        mLastFrameTime = 0;
+        mDragFrames.clear();
+        mSettleFrames.clear();
+    }
+
+    private void startFrames() {
+        if (mFrameTicker != null) {
+            mFrameTicker.start();
+        }
+    }
+
+    private void onFrame(long frameTimeNanos) {
+        if (mLastFrameTime != 0) {
+            final long interval = frameTimeNanos - mLastFrameTime;
+            final int dropped = (int) Math.max(0,
+                    (interval + mFrameIntervalNanos / 2) / mFrameIntervalNanos - 1);
+            final Frames frames = mPhase == PHASE_SETTLING ? mSettleFrames : mDragFrames;
+            frames.add(interval / 1000000.0f, dropped);
+        }
+        mLastFrameTime = frameTimeNanos;
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private final class FrameTicker implements Choreographer.FrameCallback {
+
+        private boolean mRunning;
+
+        void start() {
+            if (!mRunning) {
+                mRunning = true;
+                Choreographer.getInstance().postFrameCallback(this);
+            }
+        }
+
+        void stop() {
+            if (mRunning) {
+                mRunning = false;
+                Choreographer.getInstance().removeFrameCallback(this);
+            }
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            if (mRunning) {
+                onFrame(frameTimeNanos);
+                Choreographer.getInstance().postFrameCallback(this);
+            }
+        }
+    }
+}
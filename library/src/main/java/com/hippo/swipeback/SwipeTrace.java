@@ -0,0 +1,97 @@
+/*
+ * Copyright 2017 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hippo.swipeback;
+
+import android.os.Build;
+import android.support.v4.os.TraceCompat;
+import android.util.Log;
+import java.lang.reflect.Method;
+
+/**
+ * SwipeTrace emits trace sections and counters for systrace, if enabled.
+ * Callers check {@link #isEnabled()} once and pair sections with it,
+ * so nothing is done when disabled.
+ */
+final class SwipeTrace {
+    private SwipeTrace() {}
+
+    private static final String LOG_TAG = SwipeTrace.class.getSimpleName();
+
+    // Trace.TRACE_TAG_APP, which is hidden
+    private static final long TRACE_TAG_APP = 1L << 12;
+    private static final int ANDROID_Q = 29;
+
+    private static volatile boolean sEnabled;
+
+    private static boolean sInitialized;
+    private static Method sSetCounter;
+    private static Method sTraceCounter;
+
+    static void setEnabled(boolean enabled) {
+        sEnabled = enabled;
+    }
+
+    static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    static void beginSection(String sectionName) {
+        TraceCompat.beginSection(sectionName);
+    }
+
+    static void endSection() {
+        TraceCompat.endSection();
+    }
+
+    private static void init() {
+        if (sInitialized) {
+            return;
+        }
+        sInitialized = true;
+
+        try {
+            final Class<?> traceClass = Class.forName("android.os.Trace");
+            if (Build.VERSION.SDK_INT >= ANDROID_Q) {
+                sSetCounter = traceClass.getMethod("setCounter", String.class, long.class);
+            } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+                sTraceCounter = traceClass.getMethod("traceCounter",
+                        long.class, String.class, int.class);
+            }
+        } catch (Throwable e) {
+            Log.w(LOG_TAG, "Can't find methods to trace counter", e);
+            sSetCounter = null;
+            sTraceCounter = null;
+        }
+    }
+
+    /**
+     * Set a counter track value.
+     */
+    static void setCounter(String counterName, int value) {
+        init();
+        try {
+            if (sSetCounter != null) {
+                sSetCounter.invoke(null, counterName, (long) value);
+            } else if (sTraceCounter != null) {
+                sTraceCounter.invoke(null, TRACE_TAG_APP, counterName, value);
+            }
+        } catch (Throwable e) {
+            // Ignore
+        }
+    }
+}
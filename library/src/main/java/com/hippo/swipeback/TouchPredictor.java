@@ -0,0 +1,99 @@
+/*
+ * Copyright 2017 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hippo.swipeback;
+
+/**
+ * TouchPredictor extrapolates the position of a pointer from the velocity and
+ * acceleration of its last three samples. It doesn't allocate after creation.
+ */
+final class TouchPredictor {
+
+    private static final int SAMPLE_COUNT = 3;
+
+    private final long[] mTime = new long[SAMPLE_COUNT];
+    private final float[] mX = new float[SAMPLE_COUNT];
+    private final float[] mY = new float[SAMPLE_COUNT];
+    // Index of the newest sample
+    private int mIndex = -1;
+    private int mCount;
+
+    /**
+     * Forget all samples.
+     */
+    void reset() {
+        mIndex = -1;
+        mCount = 0;
+    }
+
+    /**
+     * Add a sample. Samples must be added in time order.
+     */
+    void addSample(long time, float x, float y) {
+        if (mCount > 0 && time <= mTime[mIndex]) {
+            // Same time, replace the newest one
+            mX[mIndex] = x;
+            mY[mIndex] = y;
+            return;
+        }
+        mIndex = (mIndex + 1) % SAMPLE_COUNT;
+        mTime[mIndex] = time;
+        mX[mIndex] = x;
+        mY[mIndex] = y;
+        if (mCount < SAMPLE_COUNT) {
+            mCount++;
+        }
+    }
+
+    /**
+     * Return the predicted offset along X axis after {@code time} ms
+     * from the newest sample, its magnitude is not greater than {@code maxOffset}.
+     */
+    float predictX(int time, float maxOffset) {
+        return predict(mX, time, maxOffset);
+    }
+
+    /**
+     * Return the predicted offset along Y axis after {@code time} ms
+     * from the newest sample, its magnitude is not greater than {@code maxOffset}.
+     */
+    float predictY(int time, float maxOffset) {
+        return predict(mY, time, maxOffset);
+    }
+
+    private float predict(float[] values, int time, float maxOffset) {
+        if (mCount < SAMPLE_COUNT || time <= 0) {
+            return 0;
+        }
+
+        final int i2 = mIndex;
+        final int i1 = (i2 + SAMPLE_COUNT - 1) % SAMPLE_COUNT;
+        final int i0 = (i1 + SAMPLE_COUNT - 1) % SAMPLE_COUNT;
+        final float dt1 = mTime[i1] - mTime[i0];
+        final float dt2 = mTime[i2] - mTime[i1];
+        final float v1 = (values[i1] - values[i0]) / dt1;
+        final float v2 = (values[i2] - values[i1]) / dt2;
+        final float a = (v2 - v1) / ((dt1 + dt2) / 2);
+
+        float offset = v2 * time + 0.5f * a * time * time;
+        if (offset * v2 <= 0) {
+            // The pointer stopped or is slowing down, never predict backward
+            offset = 0;
+        }
+        return Math.max(-maxOffset, Math.min(maxOffset, offset));
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2017 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hippo.swipeback;
+
+import java.util.Arrays;
+
+/**
+ * TouchSamples is a reusable, platform independent copy of a touch event:
+ * the action, the pointers and their samples, historical samples included.
+ * Action constants and accessors match {@code android.view.MotionEvent},
+ * so gesture code reads the same for both.
+ *
+ * <p>Historical samples can be left to a {@link HistorySource}. They are then copied
+ * pointer by pointer when first read, so pointers the gesture doesn't track cost nothing.
+ */
+final class TouchSamples {
+
+    /**
+     * Supplies the historical samples of the event being copied,
+     * read at most once per pointer and event.
+     */
+    interface HistorySource {
+
+        long getHistoricalEventTime(int pos);
+
+        float getHistoricalX(int pointerIndex, int pos);
+
+        float getHistoricalY(int pointerIndex, int pos);
+    }
+
+    static final int ACTION_DOWN = 0;
+    static final int ACTION_UP = 1;
+    static final int ACTION_MOVE = 2;
+    static final int ACTION_CANCEL = 3;
+    static final int ACTION_POINTER_DOWN = 5;
+    static final int ACTION_POINTER_UP = 6;
+
+    private int mAction;
+    private int mActionIndex;
+    private int mPointerCount;
+    private int mHistorySize;
+
+    private int[] mPointerIds = new int[4];
+    // Sample times, historical ones first and the current one last
+    private long[] mTimes = new long[8];
+    // Coordinates of sample s of pointer i are at [s * mPointerCount + i]
+    private float[] mXs = new float[32];
+    private float[] mYs = new float[32];
+
+    // Copies historical samples on demand if not null
+    private HistorySource mHistorySource;
+    private boolean mTimesLoaded;
+    // Whether historical samples of the pointer index are copied from mHistorySource
+    private boolean[] mPointersLoaded = new boolean[4];
+
+    /**
+     * Reset for a new event. All pointer IDs and samples should be set after it.
+     *
+     * @param action the masked action
+     * @param actionIndex the pointer index of ACTION_POINTER_DOWN and ACTION_POINTER_UP
+     * @param pointerCount the number of pointers
+     * @param historySize the number of historical samples
+     */
+    void reset(int action, int actionIndex, int pointerCount, int historySize) {
+        if (pointerCount <= 0 || historySize < 0) {
+            throw new IllegalArgumentException("Invalid pointer count or history size");
+        }
+        mAction = action;
+        mActionIndex = actionIndex;
+        mPointerCount = pointerCount;
+        mHistorySize = historySize;
+        mHistorySource = null;
+
+        if (mPointerIds.length < pointerCount) {
+            mPointerIds = new int[pointerCount];
+            mPointersLoaded = new boolean[pointerCount];
+        }
+        final int sampleCount = historySize + 1;
+        if (mTimes.length < sampleCount) {
+            mTimes = new long[sampleCount];
+        }
+        final int coordinateCount = sampleCount * pointerCount;
+        if (mXs.length < coordinateCount) {
+            mXs = new float[coordinateCount];
+            mYs = new float[coordinateCount];
+        }
+    }
+
+    /**
+     * Leave historical samples to the source instead of setting them.
+     * The current samples should still be set.
+     */
+    void setHistorySource(HistorySource source) {
+        mHistorySource = source;
+        mTimesLoaded = false;
+        Arrays.fill(mPointersLoaded, 0, mPointerCount, false);
+    }
+
+    void setPointerId(int pointerIndex, int pointerId) {
+        mPointerIds[pointerIndex] = pointerId;
+    }
+
+    /**
+     * Set the time of a sample. {@code pos} is the historical position,
+     * or the history size for the current sample.
+     */
+    void setTime(int pos, long time) {
+        mTimes[pos] = time;
+    }
+
+    /**
+     * Set the coordinate of a pointer in a sample. {@code pos} is the historical position,
+     * or the history size for the current sample.
+     */
+    void setPosition(int pos, int pointerIndex, float x, float y) {
+        final int i = pos * mPointerCount + pointerIndex;
+        mXs[i] = x;
+        mYs[i] = y;
+    }
+
+    /**
+     * Reset for an event of one pointer without history.
+     */
+    void set(int action, int pointerId, float x, float y, long time) {
+        reset(action, 0, 1, 0);
+        setPointerId(0, pointerId);
+        setTime(0, time);
+        setPosition(0, 0, x, y);
+    }
+
+    int getActionMasked() {
+        return mAction;
+    }
+
+    int getActionIndex() {
+        return mActionIndex;
+    }
+
+    int getPointerCount() {
+        return mPointerCount;
+    }
+
+    int getPointerId(int pointerIndex) {
+        return mPointerIds[pointerIndex];
+    }
+
+    /**
+     * Returns the index of the pointer, or -1 if it isn't in the event.
+     */
+    int findPointerIndex(int pointerId) {
+        for (int i = 0; i < mPointerCount; i++) {
+            if (mPointerIds[i] == pointerId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    int getHistorySize() {
+        return mHistorySize;
+    }
+
+    long getEventTime() {
+        return mTimes[mHistorySize];
+    }
+
+    float getX() {
+        return mXs[mHistorySize * mPointerCount];
+    }
+
+    float getY() {
+        return mYs[mHistorySize * mPointerCount];
+    }
+
+    float getX(int pointerIndex) {
+        return mXs[mHistorySize * mPointerCount + pointerIndex];
+    }
+
+    float getY(int pointerIndex) {
+        return mYs[mHistorySize * mPointerCount + pointerIndex];
+    }
+
+    long getHistoricalEventTime(int pos) {
+        if (mHistorySource != null && !mTimesLoaded) {
+            loadTimes();
+        }
+        return mTimes[pos];
+    }
+
+    float getHistoricalX(int pointerIndex, int pos) {
+        if (mHistorySource != null && !mPointersLoaded[pointerIndex]) {
+            loadPointer(pointerIndex);
+        }
+        return mXs[pos * mPointerCount + pointerIndex];
+    }
+
+    float getHistoricalY(int pointerIndex, int pos) {
+        if (mHistorySource != null && !mPointersLoaded[pointerIndex]) {
+            loadPointer(pointerIndex);
+        }
+        return mYs[pos * mPointerCount + pointerIndex];
+    }
+
+    private void loadTimes() {
+        final HistorySource source = mHistorySource;
+        for (int h = 0; h < mHistorySize; h++) {
+            mTimes[h] = source.getHistoricalEventTime(h);
+        }
+        mTimesLoaded = true;
+    }
+
+    private void loadPointer(int pointerIndex) {
+        final HistorySource source = mHistorySource;
+        for (int h = 0; h < mHistorySize; h++) {
+            setPosition(h, pointerIndex, source.getHistoricalX(pointerIndex, h),
+                    source.getHistoricalY(pointerIndex, h));
+        }
+        mPointersLoaded[pointerIndex] = true;
+    }
+
+    @Override
+    public String toString() {
+        return "TouchSamples{action=" + mAction + ", actionIndex=" + mActionIndex
+                + ", pointerIds=" + Arrays.toString(Arrays.copyOf(mPointerIds, mPointerCount))
+                + ", historySize=" + mHistorySize + "}";
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2017 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hippo.swipeback;
+
+import android.app.Activity;
+import android.os.Build;
+import android.util.Log;
+import java.lang.reflect.Method;
+
+/**
+ * Convert activity window between translucent and opaque.
+ * The methods are hidden before Android R, so reflection is used.
+ */
+final class TranslucentConverter {
+    private TranslucentConverter() {}
+
+    private static final String LOG_TAG = TranslucentConverter.class.getSimpleName();
+
+    private static final int ANDROID_R = 30;
+
+    private static boolean sInitialized;
+    private static Method sSetTranslucent;
+    private static Method sConvertToTranslucent;
+    private static Method sConvertFromTranslucent;
+
+    private static void init() {
+        if (sInitialized) {
+            return;
+        }
+        sInitialized = true;
+
+        try {
+            if (Build.VERSION.SDK_INT >= ANDROID_R) {
+                sSetTranslucent = Activity.class.getMethod("setTranslucent", boolean.class);
+            } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+                final Class<?> listenerClass =
+                        Class.forName("android.app.Activity$TranslucentConversionListener");
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+                    sConvertToTranslucent = Activity.class.getDeclaredMethod("convertToTranslucent",
+                            listenerClass, Class.forName("android.app.ActivityOptions"));
+                } else {
+                    sConvertToTranslucent = Activity.class.getDeclaredMethod("convertToTranslucent",
+                            listenerClass);
+                }
+                sConvertFromTranslucent = Activity.class.getDeclaredMethod("convertFromTranslucent");
+                sConvertToTranslucent.setAccessible(true);
+                sConvertFromTranslucent.setAccessible(true);
+            }
+        } catch (Throwable e) {
+            Log.w(LOG_TAG, "Can't find methods to convert window translucency", e);
+            sSetTranslucent = null;
+            sConvertToTranslucent = null;
+            sConvertFromTranslucent = null;
+        }
+    }
+
+    /**
+     * Returns {@code true} if window translucency can be converted.
+     */
+    static boolean isSupported() {
+        init();
+        return sSetTranslucent != null || sConvertToTranslucent != null;
+    }
+
+    /**
+     * Make the activity window translucent.
+     * Returns {@code false} if failed.
+     */
+    static boolean convertToTranslucent(Activity activity) {
+        init();
+        try {
+            if (sSetTranslucent != null) {
+                return (Boolean) sSetTranslucent.invoke(activity, true);
+            } else if (sConvertToTranslucent != null) {
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+                    sConvertToTranslucent.invoke(activity, null, null);
+                } else {
+                    sConvertToTranslucent.invoke(activity, (Object) null);
+                }
+                return true;
+            }
+        } catch (Throwable e) {
+            Log.w(LOG_TAG, "Can't convert window to translucent", e);
+        }
+        return false;
+    }
+
+    /**
+     * Make the activity window opaque.
+     * Returns {@code false} if failed.
+     */
+    static boolean convertFromTranslucent(Activity activity) {
+        init();
+        try {
+            if (sSetTranslucent != null) {
+                return (Boolean) sSetTranslucent.invoke(activity, false);
+            } else if (sConvertFromTranslucent != null) {
+                sConvertFromTranslucent.invoke(activity);
+                return true;
+            }
+        } catch (Throwable e) {
+            Log.w(LOG_TAG, "Can't convert window to opaque", e);
+        }
+        return false;
+    }
+}
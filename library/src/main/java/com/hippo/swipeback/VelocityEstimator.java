@@ -0,0 +1,195 @@
+/*
+ * Copyright 2017 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hippo.swipeback;
+
+/**
+ * VelocityEstimator estimates pointer velocity by a least-squares linear fit
+ * over the samples in a recent time window. Samples are kept in a fixed-size
+ * ring buffer for each pointer, so it never allocates after creation.
+ */
+final class VelocityEstimator {
+
+    static final int DEFAULT_TIME_WINDOW = 100; // ms
+
+    // Samples kept for each pointer
+    private static final int HISTORY_SIZE = 20;
+
+    private final int mPointerCapacity;
+    // Sample i of pointer p is at p * HISTORY_SIZE + i
+    private final long[] mTime;
+    private final float[] mX;
+    private final float[] mY;
+    // Index of the newest sample of each pointer
+    private final int[] mHead;
+    private final int[] mCount;
+
+    private int mTimeWindow = DEFAULT_TIME_WINDOW;
+
+    private float mXVelocity;
+    private float mYVelocity;
+
+    /**
+     * @param pointerCapacity pointer IDs must be in [0, pointerCapacity)
+     */
+    VelocityEstimator(int pointerCapacity) {
+        mPointerCapacity = pointerCapacity;
+        mTime = new long[pointerCapacity * HISTORY_SIZE];
+        mX = new float[pointerCapacity * HISTORY_SIZE];
+        mY = new float[pointerCapacity * HISTORY_SIZE];
+        mHead = new int[pointerCapacity];
+        mCount = new int[pointerCapacity];
+    }
+
+    /**
+     * Set the time window in milliseconds. Only samples within
+     * the window before the newest sample are used.
+     */
+    void setTimeWindow(int timeWindow) {
+        mTimeWindow = timeWindow;
+    }
+
+    int getTimeWindow() {
+        return mTimeWindow;
+    }
+
+    /**
+     * Forget samples of all pointers.
+     */
+    void clear() {
+        for (int i = 0; i < mPointerCapacity; i++) {
+            mCount[i] = 0;
+        }
+    }
+
+    /**
+     * Forget samples of the pointer.
+     */
+    void clear(int pointerId) {
+        mCount[pointerId] = 0;
+    }
+
+    /**
+     * Returns {@code true} if the pointer has any sample.
+     */
+    boolean hasSamples(int pointerId) {
+        return mCount[pointerId] != 0;
+    }
+
+    /**
+     * Add a sample for the pointer. Samples must be added in time order.
+     *
+     * @param time sample time in milliseconds
+     */
+    void addSample(int pointerId, long time, float x, float y) {
+        final int base = pointerId * HISTORY_SIZE;
+        int count = mCount[pointerId];
+        int head = mHead[pointerId];
+        if (count > 0 && time <= mTime[base + head]) {
+            // Same time, replace the newest one
+            mX[base + head] = x;
+            mY[base + head] = y;
+            return;
+        }
+        head = count == 0 ? 0 : (head + 1) % HISTORY_SIZE;
+        mTime[base + head] = time;
+        mX[base + head] = x;
+        mY[base + head] = y;
+        mHead[pointerId] = head;
+        if (count < HISTORY_SIZE) {
+            mCount[pointerId] = count + 1;
+        }
+    }
+
+    /**
+     * Compute the velocity of the pointer. Get the result by
+     * {@link #getXVelocity()} and {@link #getYVelocity()}.
+     */
+    void computeVelocity(int pointerId) {
+        mXVelocity = 0;
+        mYVelocity = 0;
+
+        if (pointerId < 0 || pointerId >= mPointerCapacity) {
+            return;
+        }
+        final int count = mCount[pointerId];
+        if (count < 2) {
+            return;
+        }
+
+        final int base = pointerId * HISTORY_SIZE;
+        final int head = mHead[pointerId];
+        final long newestTime = mTime[base + head];
+
+        // Mean of samples in time window, time relative to the newest sample
+        int n = 0;
+        float sumT = 0;
+        float sumX = 0;
+        float sumY = 0;
+        for (int i = 0; i < count; i++) {
+            final int index = base + (head - i + HISTORY_SIZE) % HISTORY_SIZE;
+            final long age = newestTime - mTime[index];
+            if (age > mTimeWindow) {
+                break;
+            }
+            n++;
+            sumT -= age;
+            sumX += mX[index];
+            sumY += mY[index];
+        }
+        if (n < 2) {
+            return;
+        }
+        final float meanT = sumT / n;
+        final float meanX = sumX / n;
+        final float meanY = sumY / n;
+
+        float stt = 0;
+        float stx = 0;
+        float sty = 0;
+        for (int i = 0; i < n; i++) {
+            final int index = base + (head - i + HISTORY_SIZE) % HISTORY_SIZE;
+            final float dt = -(newestTime - mTime[index]) - meanT;
+            stt += dt * dt;
+            stx += dt * (mX[index] - meanX);
+            sty += dt * (mY[index] - meanY);
+        }
+        if (stt == 0) {
+            return;
+        }
+
+        // Slope is in pixels per millisecond
+        mXVelocity = stx / stt * 1000;
+        mYVelocity = sty / stt * 1000;
+    }
+
+    /**
+     * Return X velocity computed by last {@link #computeVelocity(int)},
+     * in pixels per second.
+     */
+    float getXVelocity() {
+        return mXVelocity;
+    }
+
+    /**
+     * Return Y velocity computed by last {@link #computeVelocity(int)},
+     * in pixels per second.
+     */
+    float getYVelocity() {
+        return mYVelocity;
+    }
+}
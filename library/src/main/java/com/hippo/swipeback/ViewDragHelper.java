@@ -18,125 +18,115 @@
 package com.hippo.swipeback;
 
 import android.content.Context;
+import android.os.Build;
 import android.support.v4.view.MotionEventCompat;
-import android.support.v4.view.VelocityTrackerCompat;
 import android.support.v4.view.ViewCompat;
 import android.support.v4.widget.ScrollerCompat;
-import android.util.Log;
 import android.view.MotionEvent;
-import android.view.VelocityTracker;
 import android.view.View;
 import android.view.ViewConfiguration;
 import android.view.ViewGroup;
+import android.view.animation.AnimationUtils;
 import android.view.animation.Interpolator;
-import java.util.Arrays;
 
 /**
  * ViewDragHelper is a utility class for writing custom ViewGroups. It offers a number
  * of useful operations and state tracking for allowing a user to drag and reposition
  * views within their parent ViewGroup.
+ *
+ * <p>Touch handling is done by a {@link DragGesture}, which doesn't depend on Android.
+ * ViewDragHelper copies MotionEvents into {@link TouchSamples} for it, hosts it
+ * with the child views of the parent, and moves the views it settles.</p>
  */
 class ViewDragHelper {
-  private static final String TAG = "ViewDragHelper";
 
   /**
    * A null/invalid pointer ID.
    */
-  public static final int INVALID_POINTER = -1;
+  public static final int INVALID_POINTER = DragGesture.INVALID_POINTER;
 
   /**
    * A view is not currently being dragged or animating as a result of a fling/snap.
    */
-  public static final int STATE_IDLE = 0;
+  public static final int STATE_IDLE = DragGesture.STATE_IDLE;
 
   /**
    * A view is currently being dragged. The position is currently changing as a result
    * of user input or simulated user input.
    */
-  public static final int STATE_DRAGGING = 1;
+  public static final int STATE_DRAGGING = DragGesture.STATE_DRAGGING;
 
   /**
    * A view is currently settling into place as a result of a fling or
    * predefined non-interactive motion.
    */
-  public static final int STATE_SETTLING = 2;
+  public static final int STATE_SETTLING = DragGesture.STATE_SETTLING;
 
   /**
    * Edge flag indicating that the left edge should be affected.
    */
-  public static final int EDGE_LEFT = 1 << 0;
+  public static final int EDGE_LEFT = DragGesture.EDGE_LEFT;
 
   /**
    * Edge flag indicating that the right edge should be affected.
    */
-  public static final int EDGE_RIGHT = 1 << 1;
+  public static final int EDGE_RIGHT = DragGesture.EDGE_RIGHT;
 
   /**
    * Edge flag indicating that the top edge should be affected.
    */
-  public static final int EDGE_TOP = 1 << 2;
+  public static final int EDGE_TOP = DragGesture.EDGE_TOP;
 
   /**
    * Edge flag indicating that the bottom edge should be affected.
    */
-  public static final int EDGE_BOTTOM = 1 << 3;
+  public static final int EDGE_BOTTOM = DragGesture.EDGE_BOTTOM;
 
   /**
    * Edge flag set indicating all edges should be affected.
    */
-  public static final int EDGE_ALL = EDGE_LEFT | EDGE_TOP | EDGE_RIGHT | EDGE_BOTTOM;
+  public static final int EDGE_ALL = DragGesture.EDGE_ALL;
 
   /**
    * Indicates that a check should occur along the horizontal axis
    */
-  public static final int DIRECTION_HORIZONTAL = 1 << 0;
+  public static final int DIRECTION_HORIZONTAL = DragGesture.DIRECTION_HORIZONTAL;
 
   /**
    * Indicates that a check should occur along the vertical axis
    */
-  public static final int DIRECTION_VERTICAL = 1 << 1;
+  public static final int DIRECTION_VERTICAL = DragGesture.DIRECTION_VERTICAL;
 
   /**
    * Indicates that a check should occur along all axes
    */
-  public static final int DIRECTION_ALL = DIRECTION_HORIZONTAL | DIRECTION_VERTICAL;
-
-  private static final int EDGE_SIZE = 20; // dp
+  public static final int DIRECTION_ALL = DragGesture.DIRECTION_ALL;
 
-  private static final int BASE_SETTLE_DURATION = 256; // ms
-  private static final int MAX_SETTLE_DURATION = 600; // ms
-
-  // Current drag state; idle, dragging or settling
-  private int mDragState;
+  /**
+   * Settle with a scroller. The duration depends on distance and velocity.
+   */
+  public static final int SETTLE_SCROLLER = DragGesture.SETTLE_SCROLLER;
 
-  // Distance to travel before a drag may begin
-  private int mTouchSlop;
+  /**
+   * Settle along a critically damped spring, starting with the release velocity.
+   */
+  public static final int SETTLE_SPRING = DragGesture.SETTLE_SPRING;
 
-  // Last known position/pointer tracking
-  private int mActivePointerId = INVALID_POINTER;
-  private float[] mInitialMotionX;
-  private float[] mInitialMotionY;
-  private float[] mLastMotionX;
-  private float[] mLastMotionY;
-  private int[] mInitialEdgesTouched;
-  private int[] mEdgeDragsInProgress;
-  private int[] mEdgeDragsLocked;
-  private int mPointersDown;
+  private static final int EDGE_SIZE = 20; // dp
 
-  private VelocityTracker mVelocityTracker;
-  private float mMaxVelocity;
-  private float mMinVelocity;
+  private static final int MAX_PREDICTION_OFFSET = 24; // dp
 
-  private int mEdgeSize;
-  private int mTrackingEdges;
+  private final DragGesture<View> mGesture;
+  // Reused for every MotionEvent passed to mGesture
+  private final TouchSamples mSamples = new TouchSamples();
+  // Historical samples of the MotionEvent in mSamples, read only while it's dispatched
+  private final MotionEventHistory mHistory = new MotionEventHistory();
 
-  private ScrollerCompat mScroller;
+  // Move views by translation instead of offsetting their layout position
+  private boolean mUseTranslation;
 
   private final Callback mCallback;
 
-  private View mCapturedView;
-  private boolean mReleaseInProgress;
-
   private final ViewGroup mParentView;
 
   /**
@@ -335,10 +325,211 @@ class ViewDragHelper {
   private final Runnable mSetIdleRunnable = new Runnable() {
     @Override
     public void run() {
-      setDragState(STATE_IDLE);
+      mGesture.setDragState(STATE_IDLE);
+    }
+  };
+
+  private final Runnable mDragFrameRunnable = new Runnable() {
+    @Override
+    public void run() {
+      mGesture.onDragFrame();
+    }
+  };
+
+  /**
+   * Hosts {@link #mGesture} with the child views of {@link #mParentView}.
+   */
+  private final DragGesture.Host<View> mHost = new DragGesture.Host<View>() {
+    @Override
+    public int getWidth() {
+      return mParentView.getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+      return mParentView.getHeight();
+    }
+
+    @Override
+    public View findTargetUnder(int x, int y) {
+      return findTopChildUnder(x, y);
+    }
+
+    @Override
+    public boolean isTargetUnder(View target, int x, int y) {
+      return isViewUnder(target, x, y);
+    }
+
+    @Override
+    public int getLeft(View target) {
+      return getViewLeft(target);
+    }
+
+    @Override
+    public int getTop(View target) {
+      return getViewTop(target);
+    }
+
+    @Override
+    public int getHorizontalDragRange(View target) {
+      return mCallback.getViewHorizontalDragRange(target);
+    }
+
+    @Override
+    public int getVerticalDragRange(View target) {
+      return mCallback.getViewVerticalDragRange(target);
+    }
+
+    @Override
+    public int clampHorizontal(View target, int left, int dx) {
+      return mCallback.clampViewPositionHorizontal(target, left, dx);
+    }
+
+    @Override
+    public int clampVertical(View target, int top, int dy) {
+      return mCallback.clampViewPositionVertical(target, top, dy);
+    }
+
+    @Override
+    public boolean tryCapture(View target, int pointerId) {
+      return mCallback.tryCaptureView(target, pointerId);
+    }
+
+    @Override
+    public void onCaptured(View target, int pointerId) {
+      mCallback.onViewCaptured(target, pointerId);
+    }
+
+    @Override
+    public void dragTarget(View target, int left, int top, int dx, int dy) {
+      if (!SwipeTrace.isEnabled()) {
+        offsetView(target, dx, dy);
+        mCallback.onViewPositionChanged(target, left, top, dx, dy);
+        return;
+      }
+      SwipeTrace.beginSection("SwipeBack:dragTo");
+      try {
+        offsetView(target, dx, dy);
+        mCallback.onViewPositionChanged(target, left, top, dx, dy);
+      } finally {
+        SwipeTrace.endSection();
+      }
+    }
+
+    @Override
+    public void moveTarget(View target, int dx, int dy) {
+      offsetView(target, dx, dy);
+    }
+
+    @Override
+    public void onPositionChanged(View target, int left, int top, int dx, int dy) {
+      mCallback.onViewPositionChanged(target, left, top, dx, dy);
+    }
+
+    @Override
+    public void onReleased(View target, float xvel, float yvel) {
+      mCallback.onViewReleased(target, xvel, yvel);
+    }
+
+    @Override
+    public void onDragStateChanged(int state) {
+      mCallback.onViewDragStateChanged(state);
+    }
+
+    @Override
+    public void onEdgeTouched(int edgeFlags, int pointerId) {
+      mCallback.onEdgeTouched(edgeFlags, pointerId);
+    }
+
+    @Override
+    public boolean onEdgeLock(int edgeFlags) {
+      return mCallback.onEdgeLock(edgeFlags);
+    }
+
+    @Override
+    public void onEdgeDragStarted(int edgeFlags, int pointerId) {
+      mCallback.onEdgeDragStarted(edgeFlags, pointerId);
+    }
+
+    @Override
+    public void scheduleDragFrame() {
+      ViewCompat.postOnAnimation(mParentView, mDragFrameRunnable);
+    }
+
+    @Override
+    public void cancelDragFrame() {
+      mParentView.removeCallbacks(mDragFrameRunnable);
+    }
+
+    @Override
+    public void scheduleIdle() {
+      mParentView.post(mSetIdleRunnable);
+    }
+
+    @Override
+    public void cancelIdle() {
+      mParentView.removeCallbacks(mSetIdleRunnable);
+    }
+
+    @Override
+    public long currentTimeMillis() {
+      return AnimationUtils.currentAnimationTimeMillis();
     }
   };
 
+  /**
+   * Settles views for {@link #mGesture} in {@link #SETTLE_SCROLLER} mode and for flings.
+   */
+  private static final class CompatScroller implements DragGesture.Scroller {
+
+    private final ScrollerCompat mScroller;
+
+    CompatScroller(Context context) {
+      mScroller = ScrollerCompat.create(context, sInterpolator);
+    }
+
+    @Override
+    public void startScroll(int startX, int startY, int dx, int dy, int duration) {
+      mScroller.startScroll(startX, startY, dx, dy, duration);
+    }
+
+    @Override
+    public void fling(int startX, int startY, int velocityX, int velocityY,
+        int minX, int maxX, int minY, int maxY) {
+      mScroller.fling(startX, startY, velocityX, velocityY, minX, maxX, minY, maxY);
+    }
+
+    @Override
+    public boolean computeScrollOffset() {
+      return mScroller.computeScrollOffset();
+    }
+
+    @Override
+    public int getCurrX() {
+      return mScroller.getCurrX();
+    }
+
+    @Override
+    public int getCurrY() {
+      return mScroller.getCurrY();
+    }
+
+    @Override
+    public int getFinalX() {
+      return mScroller.getFinalX();
+    }
+
+    @Override
+    public int getFinalY() {
+      return mScroller.getFinalY();
+    }
+
+    @Override
+    public void abortAnimation() {
+      mScroller.abortAnimation();
+    }
+  }
+
   /**
    * Factory method to create a new ViewDragHelper.
    *
@@ -361,7 +552,7 @@ class ViewDragHelper {
    */
   public static ViewDragHelper create(ViewGroup forParent, float sensitivity, Callback cb) {
     final ViewDragHelper helper = create(forParent, cb);
-    helper.mTouchSlop = (int) (helper.mTouchSlop * (1 / sensitivity));
+    helper.mGesture.setTouchSlop((int) (helper.mGesture.getTouchSlop() * (1 / sensitivity)));
     return helper;
   }
 
@@ -386,12 +577,10 @@ class ViewDragHelper {
 
     final ViewConfiguration vc = ViewConfiguration.get(context);
     final float density = context.getResources().getDisplayMetrics().density;
-    mEdgeSize = (int) (EDGE_SIZE * density + 0.5f);
-
-    mTouchSlop = vc.getScaledTouchSlop();
-    mMaxVelocity = vc.getScaledMaximumFlingVelocity();
-    mMinVelocity = vc.getScaledMinimumFlingVelocity();
-    mScroller = ScrollerCompat.create(context, sInterpolator);
+    mGesture = new DragGesture<>(mHost, new CompatScroller(context), vc.getScaledTouchSlop(),
+        (int) (EDGE_SIZE * density + 0.5f),
+        vc.getScaledMinimumFlingVelocity(), vc.getScaledMaximumFlingVelocity(),
+        (int) (MAX_PREDICTION_OFFSET * density + 0.5f));
   }
 
   /**
@@ -401,7 +590,7 @@ class ViewDragHelper {
    * @param minVel Minimum velocity to detect
    */
   public void setMinVelocity(float minVel) {
-    mMinVelocity = minVel;
+    mGesture.setMinVelocity(minVel);
   }
 
   /**
@@ -412,7 +601,7 @@ class ViewDragHelper {
    * @return the minimum velocity that will be detected
    */
   public float getMinVelocity() {
-    return mMinVelocity;
+    return mGesture.getMinVelocity();
   }
 
   /**
@@ -421,7 +610,7 @@ class ViewDragHelper {
    * @return The current drag state
    */
   public int getViewDragState() {
-    return mDragState;
+    return mGesture.getDragState();
   }
 
   /**
@@ -437,7 +626,123 @@ class ViewDragHelper {
    * @see #EDGE_BOTTOM
    */
   public void setEdgeTrackingEnabled(int edgeFlags) {
-    mTrackingEdges = edgeFlags;
+    mGesture.setEdgeTrackingEnabled(edgeFlags);
+  }
+
+  /**
+   * Set whether to move the captured view by changing its translation instead of
+   * offsetting its layout position. Translation is a render property, so moving the
+   * view does not touch its layout. Positions reported to the callback are
+   * layout position plus translation in either mode.
+   *
+   * <p>Translation is only available on Honeycomb and above,
+   * the layout position is always offset on lower API.</p>
+   *
+   * @param useTranslation true to move views by translation
+   */
+  public void setUseTranslation(boolean useTranslation) {
+    mUseTranslation = useTranslation
+        && Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB;
+  }
+
+  /**
+   * @return true if views are moved by translation
+   */
+  public boolean isUseTranslation() {
+    return mUseTranslation;
+  }
+
+  /**
+   * Set the time window for velocity estimation. Only pointer samples within the window
+   * before the last sample are used to compute release velocity.
+   *
+   * @param timeWindow time window in milliseconds
+   */
+  public void setVelocityTimeWindow(int timeWindow) {
+    mGesture.setVelocityTimeWindow(timeWindow);
+  }
+
+  /**
+   * Set whether to predict the pointer position while dragging. If enabled, the captured
+   * view is moved to where the active pointer is expected to be after the prediction time,
+   * extrapolated from its recent velocity and acceleration. The prediction never goes
+   * backward and its magnitude is bounded. The view is moved back to the real pointer
+   * position before it is released.
+   *
+   * @param predict true to predict the pointer position
+   */
+  public void setTouchPredictionEnabled(boolean predict) {
+    mGesture.setTouchPredictionEnabled(predict);
+  }
+
+  /**
+   * @return true if the pointer position is predicted while dragging
+   */
+  public boolean isTouchPredictionEnabled() {
+    return mGesture.isTouchPredictionEnabled();
+  }
+
+  /**
+   * Set how far ahead to predict the pointer position, usually the latency from
+   * input to display.
+   *
+   * @param time prediction time in milliseconds
+   */
+  public void setTouchPredictionTime(int time) {
+    mGesture.setTouchPredictionTime(time);
+  }
+
+  /**
+   * Set whether to coalesce drag motion. If enabled, motion of the captured view
+   * from all move events in one frame is accumulated and applied once on the next
+   * animation frame, so clamping, moving and position callbacks happen at most
+   * once per frame. Pending motion is always applied before the view is released.
+   *
+   * @param coalesce true to apply drag motion once per frame
+   */
+  public void setDragCoalescingEnabled(boolean coalesce) {
+    mGesture.setDragCoalescingEnabled(coalesce);
+  }
+
+  /**
+   * @return true if drag motion is applied once per frame
+   */
+  public boolean isDragCoalescingEnabled() {
+    return mGesture.isDragCoalescingEnabled();
+  }
+
+  /**
+   * Set how to settle the captured view after release.
+   * Flings started by {@link #flingCapturedView(int, int, int, int)} always use a scroller.
+   *
+   * @param mode {@link #SETTLE_SCROLLER} or {@link #SETTLE_SPRING}
+   */
+  public void setSettleMode(int mode) {
+    mGesture.setSettleMode(mode);
+  }
+
+  /**
+   * @return {@link #SETTLE_SCROLLER} or {@link #SETTLE_SPRING}
+   */
+  public int getSettleMode() {
+    return mGesture.getSettleMode();
+  }
+
+  /**
+   * Set the max duration of spring settling in milliseconds.
+   * It is clamped to [16, 600].
+   *
+   * @param duration the max duration
+   */
+  public void setSpringDuration(int duration) {
+    mGesture.setSpringDuration(duration);
+  }
+
+  /**
+   * @return the max duration of spring settling in milliseconds
+   */
+  public int getSpringDuration() {
+    return mGesture.getSpringDuration();
   }
 
   /**
@@ -448,9 +753,10 @@ class ViewDragHelper {
    * @see #setEdgeTrackingEnabled(int)
    */
   public int getEdgeSize() {
-    return mEdgeSize;
+    return mGesture.getEdgeSize();
   }
 
+
   /**
    * Capture a specific child view for dragging within the parent. The callback will be notified
    * but {@link Callback#tryCaptureView(android.view.View, int)} will not be asked permission to
@@ -465,17 +771,14 @@ class ViewDragHelper {
           + "of the ViewDragHelper's tracked parent view (" + mParentView + ")");
     }
 
-    mCapturedView = childView;
-    mActivePointerId = activePointerId;
-    mCallback.onViewCaptured(childView, activePointerId);
-    setDragState(STATE_DRAGGING);
+    mGesture.capture(childView, activePointerId);
   }
 
   /**
    * @return The currently captured view, or null if no view has been captured.
    */
   public View getCapturedView() {
-    return mCapturedView;
+    return mGesture.getCapturedTarget();
   }
 
   /**
@@ -483,14 +786,14 @@ class ViewDragHelper {
    *         or {@link #INVALID_POINTER}.
    */
   public int getActivePointerId() {
-    return mActivePointerId;
+    return mGesture.getActivePointerId();
   }
 
   /**
    * @return The minimum distance in pixels that the user must travel to initiate a drag
    */
   public int getTouchSlop() {
-    return mTouchSlop;
+    return mGesture.getTouchSlop();
   }
 
   /**
@@ -498,13 +801,7 @@ class ViewDragHelper {
    * {@link #processTouchEvent(android.view.MotionEvent)} receiving an ACTION_CANCEL event.
    */
   public void cancel() {
-    mActivePointerId = INVALID_POINTER;
-    clearMotionHistory();
-
-    if (mVelocityTracker != null) {
-      mVelocityTracker.recycle();
-      mVelocityTracker = null;
-    }
+    mGesture.cancel();
   }
 
   /**
@@ -512,16 +809,7 @@ class ViewDragHelper {
    * animation.
    */
   public void abort() {
-    cancel();
-    if (mDragState == STATE_SETTLING) {
-      final int oldX = mScroller.getCurrX();
-      final int oldY = mScroller.getCurrY();
-      mScroller.abortAnimation();
-      final int newX = mScroller.getCurrX();
-      final int newY = mScroller.getCurrY();
-      mCallback.onViewPositionChanged(mCapturedView, newX, newY, newX - oldX, newY - oldY);
-    }
-    setDragState(STATE_IDLE);
+    mGesture.abort();
   }
 
   /**
@@ -539,17 +827,7 @@ class ViewDragHelper {
    * @return true if animation should continue through {@link #continueSettling(boolean)} calls
    */
   public boolean smoothSlideViewTo(View child, int finalLeft, int finalTop) {
-    mCapturedView = child;
-    mActivePointerId = INVALID_POINTER;
-
-    boolean continueSliding = forceSettleCapturedViewAt(finalLeft, finalTop, 0, 0);
-    if (!continueSliding && mDragState == STATE_IDLE && mCapturedView != null) {
-      // If we're in an IDLE state to begin with and aren't moving anywhere, we
-      // end up having a non-null capturedView with an IDLE dragState
-      mCapturedView = null;
-    }
-
-    return continueSliding;
+    return mGesture.smoothSlideTo(child, finalLeft, finalTop);
   }
 
   /**
@@ -564,126 +842,12 @@ class ViewDragHelper {
    * @return true if animation should continue through {@link #continueSettling(boolean)} calls
    */
   public boolean settleCapturedViewAt(int finalLeft, int finalTop) {
-    if (!mReleaseInProgress) {
+    if (!mGesture.isReleaseInProgress()) {
       throw new IllegalStateException("Cannot settleCapturedViewAt outside of a call to "
           + "Callback#onViewReleased");
     }
 
-    return forceSettleCapturedViewAt(finalLeft, finalTop,
-        (int) VelocityTrackerCompat.getXVelocity(mVelocityTracker, mActivePointerId),
-        (int) VelocityTrackerCompat.getYVelocity(mVelocityTracker, mActivePointerId));
-  }
-
-  /**
-   * Settle the captured view at the given (left, top) position.
-   *
-   * @param finalLeft Target left position for the captured view
-   * @param finalTop Target top position for the captured view
-   * @param xvel Horizontal velocity
-   * @param yvel Vertical velocity
-   * @return true if animation should continue through {@link #continueSettling(boolean)} calls
-   */
-  private boolean forceSettleCapturedViewAt(int finalLeft, int finalTop, int xvel, int yvel) {
-    final int startLeft = mCapturedView.getLeft();
-    final int startTop = mCapturedView.getTop();
-    final int dx = finalLeft - startLeft;
-    final int dy = finalTop - startTop;
-
-    if (dx == 0 && dy == 0) {
-      // Nothing to do. Send callbacks, be done.
-      mScroller.abortAnimation();
-      setDragState(STATE_IDLE);
-      return false;
-    }
-
-    final int duration = computeSettleDuration(mCapturedView, dx, dy, xvel, yvel);
-    mScroller.startScroll(startLeft, startTop, dx, dy, duration);
-
-    setDragState(STATE_SETTLING);
-    return true;
-  }
-
-  private int computeSettleDuration(View child, int dx, int dy, int xvel, int yvel) {
-    xvel = clampMag(xvel, (int) mMinVelocity, (int) mMaxVelocity);
-    yvel = clampMag(yvel, (int) mMinVelocity, (int) mMaxVelocity);
-    final int absDx = Math.abs(dx);
-    final int absDy = Math.abs(dy);
-    final int absXVel = Math.abs(xvel);
-    final int absYVel = Math.abs(yvel);
-    final int addedVel = absXVel + absYVel;
-    final int addedDistance = absDx + absDy;
-
-    final float xweight = xvel != 0 ? (float) absXVel / addedVel :
-        (float) absDx / addedDistance;
-    final float yweight = yvel != 0 ? (float) absYVel / addedVel :
-        (float) absDy / addedDistance;
-
-    int xduration = computeAxisDuration(dx, xvel, mCallback.getViewHorizontalDragRange(child));
-    int yduration = computeAxisDuration(dy, yvel, mCallback.getViewVerticalDragRange(child));
-
-    return (int) (xduration * xweight + yduration * yweight);
-  }
-
-  private int computeAxisDuration(int delta, int velocity, int motionRange) {
-    if (delta == 0) {
-      return 0;
-    }
-
-    final int width = mParentView.getWidth();
-    final int halfWidth = width / 2;
-    final float distanceRatio = Math.min(1f, (float) Math.abs(delta) / width);
-    final float distance = halfWidth + halfWidth
-        * distanceInfluenceForSnapDuration(distanceRatio);
-
-    int duration;
-    velocity = Math.abs(velocity);
-    if (velocity > 0) {
-      duration = 4 * Math.round(1000 * Math.abs(distance / velocity));
-    } else {
-      final float range = (float) Math.abs(delta) / motionRange;
-      duration = (int) ((range + 1) * BASE_SETTLE_DURATION);
-    }
-    return Math.min(duration, MAX_SETTLE_DURATION);
-  }
-
-  /**
-   * Clamp the magnitude of value for absMin and absMax.
-   * If the value is below the minimum, it will be clamped to zero.
-   * If the value is above the maximum, it will be clamped to the maximum.
-   *
-   * @param value Value to clamp
-   * @param absMin Absolute value of the minimum significant value to return
-   * @param absMax Absolute value of the maximum value to return
-   * @return The clamped value with the same sign as <code>value</code>
-   */
-  private int clampMag(int value, int absMin, int absMax) {
-    final int absValue = Math.abs(value);
-    if (absValue < absMin) return 0;
-    if (absValue > absMax) return value > 0 ? absMax : -absMax;
-    return value;
-  }
-
-  /**
-   * Clamp the magnitude of value for absMin and absMax.
-   * If the value is below the minimum, it will be clamped to zero.
-   * If the value is above the maximum, it will be clamped to the maximum.
-   *
-   * @param value Value to clamp
-   * @param absMin Absolute value of the minimum significant value to return
-   * @param absMax Absolute value of the maximum value to return
-   * @return The clamped value with the same sign as <code>value</code>
-   */
-  private float clampMag(float value, float absMin, float absMax) {
-    final float absValue = Math.abs(value);
-    if (absValue < absMin) return 0;
-    if (absValue > absMax) return value > 0 ? absMax : -absMax;
-    return value;
-  }
-
-  private float distanceInfluenceForSnapDuration(float f) {
-    f -= 0.5f; // center the values about 0.
-    f *= 0.3f * Math.PI / 2.0f;
-    return (float) Math.sin(f);
+    return mGesture.settleCapturedAt(finalLeft, finalTop);
   }
 
   /**
@@ -697,17 +861,12 @@ class ViewDragHelper {
    * @param maxTop Maximum Y position for the view's top edge
    */
   public void flingCapturedView(int minLeft, int minTop, int maxLeft, int maxTop) {
-    if (!mReleaseInProgress) {
+    if (!mGesture.isReleaseInProgress()) {
       throw new IllegalStateException("Cannot flingCapturedView outside of a call to "
           + "Callback#onViewReleased");
     }
 
-    mScroller.fling(mCapturedView.getLeft(), mCapturedView.getTop(),
-        (int) VelocityTrackerCompat.getXVelocity(mVelocityTracker, mActivePointerId),
-        (int) VelocityTrackerCompat.getYVelocity(mVelocityTracker, mActivePointerId),
-        minLeft, maxLeft, minTop, maxTop);
-
-    setDragState(STATE_SETTLING);
+    mGesture.flingCaptured(minLeft, minTop, maxLeft, maxTop);
   }
 
   /**
@@ -719,142 +878,43 @@ class ViewDragHelper {
    *                       Set this to true if you are calling this method from
    *                       {@link android.view.View#computeScroll()} or similar methods
    *                       invoked as part of layout or drawing.
-   * @return true if settle is still in progress
+   * @return true if settle is still in progress and needs more calls
    */
   public boolean continueSettling(boolean deferCallbacks) {
-    if (mDragState == STATE_SETTLING) {
-      boolean keepGoing = mScroller.computeScrollOffset();
-      final int x = mScroller.getCurrX();
-      final int y = mScroller.getCurrY();
-      final int dx = x - mCapturedView.getLeft();
-      final int dy = y - mCapturedView.getTop();
-
-      if (dx != 0) {
-        ViewCompat.offsetLeftAndRight(mCapturedView, dx);
-      }
-      if (dy != 0) {
-        ViewCompat.offsetTopAndBottom(mCapturedView, dy);
-      }
-
-      if (dx != 0 || dy != 0) {
-        mCallback.onViewPositionChanged(mCapturedView, x, y, dx, dy);
-      }
-
-      if (keepGoing && x == mScroller.getFinalX() && y == mScroller.getFinalY()) {
-        // Close enough. The interpolator/scroller might think we're still moving
-        // but the user sure doesn't.
-        mScroller.abortAnimation();
-        keepGoing = false;
-      }
-
-      if (!keepGoing) {
-        if (deferCallbacks) {
-          mParentView.post(mSetIdleRunnable);
-        } else {
-          setDragState(STATE_IDLE);
-        }
-      }
+    if (!SwipeTrace.isEnabled()) {
+      return mGesture.continueSettling(deferCallbacks);
+    }
+    SwipeTrace.beginSection("SwipeBack:continueSettling");
+    try {
+      return mGesture.continueSettling(deferCallbacks);
+    } finally {
+      SwipeTrace.endSection();
     }
-
-    return mDragState == STATE_SETTLING;
   }
 
   /**
-   * Like all callback events this must happen on the UI thread, but release
-   * involves some extra semantics. During a release (mReleaseInProgress)
-   * is the only time it is valid to call {@link #settleCapturedViewAt(int, int)}
-   * or {@link #flingCapturedView(int, int, int, int)}.
+   * Move the captured view by the given delta, as if it were dragged by a pointer.
+   * The motion is clamped by the callback. This is only valid in {@link #STATE_DRAGGING},
+   * it is useful to drag a view captured by {@link #captureChildView(View, int)}
+   * with input not from touch events, like nested scrolling.
+   *
+   * @param dx Delta along the X axis
+   * @param dy Delta along the Y axis
    */
-  private void dispatchViewReleased(float xvel, float yvel) {
-    mReleaseInProgress = true;
-    mCallback.onViewReleased(mCapturedView, xvel, yvel);
-    mReleaseInProgress = false;
-
-    if (mDragState == STATE_DRAGGING) {
-      // onViewReleased didn't call a method that would have changed this. Go idle.
-      setDragState(STATE_IDLE);
-    }
-  }
-
-  private void clearMotionHistory() {
-    if (mInitialMotionX == null) {
-      return;
-    }
-    Arrays.fill(mInitialMotionX, 0);
-    Arrays.fill(mInitialMotionY, 0);
-    Arrays.fill(mLastMotionX, 0);
-    Arrays.fill(mLastMotionY, 0);
-    Arrays.fill(mInitialEdgesTouched, 0);
-    Arrays.fill(mEdgeDragsInProgress, 0);
-    Arrays.fill(mEdgeDragsLocked, 0);
-    mPointersDown = 0;
-  }
-
-  private void clearMotionHistory(int pointerId) {
-    if (mInitialMotionX == null || !isPointerDown(pointerId)) {
-      return;
-    }
-    mInitialMotionX[pointerId] = 0;
-    mInitialMotionY[pointerId] = 0;
-    mLastMotionX[pointerId] = 0;
-    mLastMotionY[pointerId] = 0;
-    mInitialEdgesTouched[pointerId] = 0;
-    mEdgeDragsInProgress[pointerId] = 0;
-    mEdgeDragsLocked[pointerId] = 0;
-    mPointersDown &= ~(1 << pointerId);
-  }
-
-  private void ensureMotionHistorySizeForId(int pointerId) {
-    if (mInitialMotionX == null || mInitialMotionX.length <= pointerId) {
-      float[] imx = new float[pointerId + 1];
-      float[] imy = new float[pointerId + 1];
-      float[] lmx = new float[pointerId + 1];
-      float[] lmy = new float[pointerId + 1];
-      int[] iit = new int[pointerId + 1];
-      int[] edip = new int[pointerId + 1];
-      int[] edl = new int[pointerId + 1];
-
-      if (mInitialMotionX != null) {
-        System.arraycopy(mInitialMotionX, 0, imx, 0, mInitialMotionX.length);
-        System.arraycopy(mInitialMotionY, 0, imy, 0, mInitialMotionY.length);
-        System.arraycopy(mLastMotionX, 0, lmx, 0, mLastMotionX.length);
-        System.arraycopy(mLastMotionY, 0, lmy, 0, mLastMotionY.length);
-        System.arraycopy(mInitialEdgesTouched, 0, iit, 0, mInitialEdgesTouched.length);
-        System.arraycopy(mEdgeDragsInProgress, 0, edip, 0, mEdgeDragsInProgress.length);
-        System.arraycopy(mEdgeDragsLocked, 0, edl, 0, mEdgeDragsLocked.length);
-      }
-
-      mInitialMotionX = imx;
-      mInitialMotionY = imy;
-      mLastMotionX = lmx;
-      mLastMotionY = lmy;
-      mInitialEdgesTouched = iit;
-      mEdgeDragsInProgress = edip;
-      mEdgeDragsLocked = edl;
-    }
+  public void dragCapturedViewBy(int dx, int dy) {
+    mGesture.dragCapturedBy(dx, dy);
   }
 
-  private void saveInitialMotion(float x, float y, int pointerId) {
-    ensureMotionHistorySizeForId(pointerId);
-    mInitialMotionX[pointerId] = mLastMotionX[pointerId] = x;
-    mInitialMotionY[pointerId] = mLastMotionY[pointerId] = y;
-    mInitialEdgesTouched[pointerId] = getEdgesTouched((int) x, (int) y);
-    mPointersDown |= 1 << pointerId;
-  }
-
-  private void saveLastMotion(MotionEvent ev) {
-    final int pointerCount = ev.getPointerCount();
-    for (int i = 0; i < pointerCount; i++) {
-      final int pointerId = ev.getPointerId(i);
-      // If pointer is invalid then skip saving on ACTION_MOVE.
-      if (!isValidPointerForActionMove(pointerId)) {
-        continue;
-      }
-      final float x = ev.getX(i);
-      final float y = ev.getY(i);
-      mLastMotionX[pointerId] = x;
-      mLastMotionY[pointerId] = y;
-    }
+  /**
+   * Release the captured view, as if the dragging pointer went up with the given velocity.
+   * {@link Callback#onViewReleased(View, float, float)} is called with clamped velocity.
+   * This is only valid in {@link #STATE_DRAGGING}.
+   *
+   * @param xvel X velocity in pixels per second
+   * @param yvel Y velocity in pixels per second
+   */
+  public void releaseCapturedView(float xvel, float yvel) {
+    mGesture.releaseCaptured(xvel, yvel);
   }
 
   /**
@@ -871,18 +931,11 @@ class ViewDragHelper {
    * @return true if the pointer with the given ID is still down
    */
   public boolean isPointerDown(int pointerId) {
-    return (mPointersDown & 1 << pointerId) != 0;
+    return mGesture.isPointerDown(pointerId);
   }
 
   void setDragState(int state) {
-    mParentView.removeCallbacks(mSetIdleRunnable);
-    if (mDragState != state) {
-      mDragState = state;
-      mCallback.onViewDragStateChanged(state);
-      if (mDragState == STATE_IDLE) {
-        mCapturedView = null;
-      }
-    }
+    mGesture.setDragState(state);
   }
 
   /**
@@ -895,16 +948,7 @@ class ViewDragHelper {
    * @return true if capture was successful
    */
   boolean tryCaptureViewForDrag(View toCapture, int pointerId) {
-    if (toCapture == mCapturedView && mActivePointerId == pointerId) {
-      // Already done!
-      return true;
-    }
-    if (toCapture != null && mCallback.tryCaptureView(toCapture, pointerId)) {
-      mActivePointerId = pointerId;
-      captureChildView(toCapture, pointerId);
-      return true;
-    }
-    return false;
+    return mGesture.tryCaptureForDrag(toCapture, pointerId);
   }
 
   /**
@@ -951,133 +995,15 @@ class ViewDragHelper {
    * @return true if the parent view should return true from onInterceptTouchEvent
    */
   public boolean shouldInterceptTouchEvent(MotionEvent ev) {
-    final int action = MotionEventCompat.getActionMasked(ev);
-    final int actionIndex = MotionEventCompat.getActionIndex(ev);
-
-    if (action == MotionEvent.ACTION_DOWN) {
-      // Reset things for a new event stream, just in case we didn't get
-      // the whole previous stream.
-      cancel();
+    if (!SwipeTrace.isEnabled()) {
+      return mGesture.shouldInterceptTouchEvent(toTouchSamples(ev));
     }
-
-    if (mVelocityTracker == null) {
-      mVelocityTracker = VelocityTracker.obtain();
-    }
-    mVelocityTracker.addMovement(ev);
-
-    switch (action) {
-      case MotionEvent.ACTION_DOWN: {
-        final float x = ev.getX();
-        final float y = ev.getY();
-        final int pointerId = ev.getPointerId(0);
-        saveInitialMotion(x, y, pointerId);
-
-        final View toCapture = findTopChildUnder((int) x, (int) y);
-
-        // Catch a settling view if possible.
-        if (toCapture == mCapturedView && mDragState == STATE_SETTLING) {
-          tryCaptureViewForDrag(toCapture, pointerId);
-        }
-
-        final int edgesTouched = mInitialEdgesTouched[pointerId];
-        if ((edgesTouched & mTrackingEdges) != 0) {
-          mCallback.onEdgeTouched(edgesTouched & mTrackingEdges, pointerId);
-        }
-        break;
-      }
-
-      case MotionEventCompat.ACTION_POINTER_DOWN: {
-        final int pointerId = ev.getPointerId(actionIndex);
-        final float x = ev.getX(actionIndex);
-        final float y = ev.getY(actionIndex);
-
-        saveInitialMotion(x, y, pointerId);
-
-        // A ViewDragHelper can only manipulate one view at a time.
-        if (mDragState == STATE_IDLE) {
-          final int edgesTouched = mInitialEdgesTouched[pointerId];
-          if ((edgesTouched & mTrackingEdges) != 0) {
-            mCallback.onEdgeTouched(edgesTouched & mTrackingEdges, pointerId);
-          }
-        } else if (mDragState == STATE_SETTLING) {
-          // Catch a settling view if possible.
-          final View toCapture = findTopChildUnder((int) x, (int) y);
-          if (toCapture == mCapturedView) {
-            tryCaptureViewForDrag(toCapture, pointerId);
-          }
-        }
-        break;
-      }
-
-      case MotionEvent.ACTION_MOVE: {
-        if (mInitialMotionX == null || mInitialMotionY == null) break;
-
-        // First to cross a touch slop over a draggable view wins. Also report edge drags.
-        final int pointerCount = ev.getPointerCount();
-        for (int i = 0; i < pointerCount; i++) {
-          final int pointerId = ev.getPointerId(i);
-
-          // If pointer is invalid then skip the ACTION_MOVE.
-          if (!isValidPointerForActionMove(pointerId)) continue;
-
-          final float x = ev.getX(i);
-          final float y = ev.getY(i);
-          final float dx = x - mInitialMotionX[pointerId];
-          final float dy = y - mInitialMotionY[pointerId];
-
-          final View toCapture = findTopChildUnder((int) x, (int) y);
-          final boolean pastSlop = toCapture != null && checkTouchSlop(toCapture, dx, dy);
-          if (pastSlop) {
-            // check the callback's
-            // getView[Horizontal|Vertical]DragRange methods to know
-            // if you can move at all along an axis, then see if it
-            // would clamp to the same value. If you can't move at
-            // all in every dimension with a nonzero range, bail.
-            final int oldLeft = toCapture.getLeft();
-            final int targetLeft = oldLeft + (int) dx;
-            final int newLeft = mCallback.clampViewPositionHorizontal(toCapture,
-                targetLeft, (int) dx);
-            final int oldTop = toCapture.getTop();
-            final int targetTop = oldTop + (int) dy;
-            final int newTop = mCallback.clampViewPositionVertical(toCapture, targetTop,
-                (int) dy);
-            final int horizontalDragRange = mCallback.getViewHorizontalDragRange(
-                toCapture);
-            final int verticalDragRange = mCallback.getViewVerticalDragRange(toCapture);
-            if ((horizontalDragRange == 0 || horizontalDragRange > 0
-                && newLeft == oldLeft) && (verticalDragRange == 0
-                || verticalDragRange > 0 && newTop == oldTop)) {
-              break;
-            }
-          }
-          reportNewEdgeDrags(dx, dy, pointerId);
-          if (mDragState == STATE_DRAGGING) {
-            // Callback might have started an edge drag
-            break;
-          }
-
-          if (pastSlop && tryCaptureViewForDrag(toCapture, pointerId)) {
-            break;
-          }
-        }
-        saveLastMotion(ev);
-        break;
-      }
-
-      case MotionEventCompat.ACTION_POINTER_UP: {
-        final int pointerId = ev.getPointerId(actionIndex);
-        clearMotionHistory(pointerId);
-        break;
-      }
-
-      case MotionEvent.ACTION_UP:
-      case MotionEvent.ACTION_CANCEL: {
-        cancel();
-        break;
-      }
+    SwipeTrace.beginSection("SwipeBack:shouldInterceptTouchEvent");
+    try {
+      return mGesture.shouldInterceptTouchEvent(toTouchSamples(ev));
+    } finally {
+      SwipeTrace.endSection();
     }
-
-    return mDragState == STATE_DRAGGING;
   }
 
   /**
@@ -1087,226 +1013,63 @@ class ViewDragHelper {
    * @param ev The touch event received by the parent view
    */
   public void processTouchEvent(MotionEvent ev) {
-    final int action = MotionEventCompat.getActionMasked(ev);
-    final int actionIndex = MotionEventCompat.getActionIndex(ev);
-
-    if (action == MotionEvent.ACTION_DOWN) {
-      // Reset things for a new event stream, just in case we didn't get
-      // the whole previous stream.
-      cancel();
-    }
-
-    if (mVelocityTracker == null) {
-      mVelocityTracker = VelocityTracker.obtain();
+    if (!SwipeTrace.isEnabled()) {
+      mGesture.processTouchEvent(toTouchSamples(ev));
+      return;
     }
-    mVelocityTracker.addMovement(ev);
-
-    switch (action) {
-      case MotionEvent.ACTION_DOWN: {
-        final float x = ev.getX();
-        final float y = ev.getY();
-        final int pointerId = ev.getPointerId(0);
-        final View toCapture = findTopChildUnder((int) x, (int) y);
-
-        saveInitialMotion(x, y, pointerId);
-
-        // Since the parent is already directly processing this touch event,
-        // there is no reason to delay for a slop before dragging.
-        // Start immediately if possible.
-        tryCaptureViewForDrag(toCapture, pointerId);
-
-        final int edgesTouched = mInitialEdgesTouched[pointerId];
-        if ((edgesTouched & mTrackingEdges) != 0) {
-          mCallback.onEdgeTouched(edgesTouched & mTrackingEdges, pointerId);
-        }
-        break;
-      }
-
-      case MotionEventCompat.ACTION_POINTER_DOWN: {
-        final int pointerId = ev.getPointerId(actionIndex);
-        final float x = ev.getX(actionIndex);
-        final float y = ev.getY(actionIndex);
-
-        saveInitialMotion(x, y, pointerId);
-
-        // A ViewDragHelper can only manipulate one view at a time.
-        if (mDragState == STATE_IDLE) {
-          // If we're idle we can do anything! Treat it like a normal down event.
-
-          final View toCapture = findTopChildUnder((int) x, (int) y);
-          tryCaptureViewForDrag(toCapture, pointerId);
-
-          final int edgesTouched = mInitialEdgesTouched[pointerId];
-          if ((edgesTouched & mTrackingEdges) != 0) {
-            mCallback.onEdgeTouched(edgesTouched & mTrackingEdges, pointerId);
-          }
-        } else if (isCapturedViewUnder((int) x, (int) y)) {
-          // We're still tracking a captured view. If the same view is under this
-          // point, we'll swap to controlling it with this pointer instead.
-          // (This will still work if we're "catching" a settling view.)
-
-          tryCaptureViewForDrag(mCapturedView, pointerId);
-        }
-        break;
-      }
-
-      case MotionEvent.ACTION_MOVE: {
-        if (mDragState == STATE_DRAGGING) {
-          // If pointer is invalid then skip the ACTION_MOVE.
-          if (!isValidPointerForActionMove(mActivePointerId)) break;
-
-          final int index = ev.findPointerIndex(mActivePointerId);
-          final float x = ev.getX(index);
-          final float y = ev.getY(index);
-          final int idx = (int) (x - mLastMotionX[mActivePointerId]);
-          final int idy = (int) (y - mLastMotionY[mActivePointerId]);
-
-          dragTo(mCapturedView.getLeft() + idx, mCapturedView.getTop() + idy, idx, idy);
-
-          saveLastMotion(ev);
-        } else {
-          // Check to see if any pointer is now over a draggable view.
-          final int pointerCount = ev.getPointerCount();
-          for (int i = 0; i < pointerCount; i++) {
-            final int pointerId = ev.getPointerId(i);
-
-            // If pointer is invalid then skip the ACTION_MOVE.
-            if (!isValidPointerForActionMove(pointerId)) continue;
-
-            final float x = ev.getX(i);
-            final float y = ev.getY(i);
-            final float dx = x - mInitialMotionX[pointerId];
-            final float dy = y - mInitialMotionY[pointerId];
-
-            reportNewEdgeDrags(dx, dy, pointerId);
-            if (mDragState == STATE_DRAGGING) {
-              // Callback might have started an edge drag.
-              break;
-            }
-
-            final View toCapture = findTopChildUnder((int) x, (int) y);
-            if (checkTouchSlop(toCapture, dx, dy)
-                && tryCaptureViewForDrag(toCapture, pointerId)) {
-              break;
-            }
-          }
-          saveLastMotion(ev);
-        }
-        break;
-      }
-
-      case MotionEventCompat.ACTION_POINTER_UP: {
-        final int pointerId = ev.getPointerId(actionIndex);
-        if (mDragState == STATE_DRAGGING && pointerId == mActivePointerId) {
-          // Try to find another pointer that's still holding on to the captured view.
-          int newActivePointer = INVALID_POINTER;
-          final int pointerCount = ev.getPointerCount();
-          for (int i = 0; i < pointerCount; i++) {
-            final int id = ev.getPointerId(i);
-            if (id == mActivePointerId) {
-              // This one's going away, skip.
-              continue;
-            }
-
-            final float x = ev.getX(i);
-            final float y = ev.getY(i);
-            if (findTopChildUnder((int) x, (int) y) == mCapturedView
-                && tryCaptureViewForDrag(mCapturedView, id)) {
-              newActivePointer = mActivePointerId;
-              break;
-            }
-          }
-
-          if (newActivePointer == INVALID_POINTER) {
-            // We didn't find another pointer still touching the view, release it.
-            releaseViewForPointerUp();
-          }
-        }
-        clearMotionHistory(pointerId);
-        break;
-      }
-
-      case MotionEvent.ACTION_UP: {
-        if (mDragState == STATE_DRAGGING) {
-          releaseViewForPointerUp();
-        }
-        cancel();
-        break;
-      }
-
-      case MotionEvent.ACTION_CANCEL: {
-        if (mDragState == STATE_DRAGGING) {
-          dispatchViewReleased(0, 0);
-        }
-        cancel();
-        break;
-      }
+    SwipeTrace.beginSection("SwipeBack:processTouchEvent");
+    try {
+      mGesture.processTouchEvent(toTouchSamples(ev));
+    } finally {
+      SwipeTrace.endSection();
     }
   }
 
-  private void reportNewEdgeDrags(float dx, float dy, int pointerId) {
-    int dragsStarted = 0;
-    if (checkNewEdgeDrag(dx, dy, pointerId, EDGE_LEFT)) {
-      dragsStarted |= EDGE_LEFT;
-    }
-    if (checkNewEdgeDrag(dy, dx, pointerId, EDGE_TOP)) {
-      dragsStarted |= EDGE_TOP;
-    }
-    if (checkNewEdgeDrag(dx, dy, pointerId, EDGE_RIGHT)) {
-      dragsStarted |= EDGE_RIGHT;
+  /**
+   * Copy the action, pointers and current samples of the event into {@link #mSamples}.
+   * Historical samples are only copied for the pointers mGesture reads them of.
+   */
+  private TouchSamples toTouchSamples(MotionEvent ev) {
+    final TouchSamples samples = mSamples;
+    final int pointerCount = ev.getPointerCount();
+    final int historySize = ev.getHistorySize();
+    samples.reset(MotionEventCompat.getActionMasked(ev), MotionEventCompat.getActionIndex(ev),
+        pointerCount, historySize);
+    for (int i = 0; i < pointerCount; i++) {
+      samples.setPointerId(i, ev.getPointerId(i));
     }
-    if (checkNewEdgeDrag(dy, dx, pointerId, EDGE_BOTTOM)) {
-      dragsStarted |= EDGE_BOTTOM;
+    if (historySize > 0) {
+      mHistory.mEvent = ev;
+      samples.setHistorySource(mHistory);
     }
-
-    if (dragsStarted != 0) {
-      mEdgeDragsInProgress[pointerId] |= dragsStarted;
-      mCallback.onEdgeDragStarted(dragsStarted, pointerId);
+    samples.setTime(historySize, ev.getEventTime());
+    for (int i = 0; i < pointerCount; i++) {
+      samples.setPosition(historySize, i, ev.getX(i), ev.getY(i));
     }
+    return samples;
   }
 
-  private boolean checkNewEdgeDrag(float delta, float odelta, int pointerId, int edge) {
-    final float absDelta = Math.abs(delta);
-    final float absODelta = Math.abs(odelta);
+  /**
+   * Reads historical samples for {@link #mSamples} from the MotionEvent being dispatched.
+   */
+  private static final class MotionEventHistory implements TouchSamples.HistorySource {
 
-    if ((mInitialEdgesTouched[pointerId] & edge) != edge  || (mTrackingEdges & edge) == 0
-        || (mEdgeDragsLocked[pointerId] & edge) == edge
-        || (mEdgeDragsInProgress[pointerId] & edge) == edge
-        || (absDelta <= mTouchSlop && absODelta <= mTouchSlop)) {
-      return false;
-    }
-    if (absDelta < absODelta * 0.5f && mCallback.onEdgeLock(edge)) {
-      mEdgeDragsLocked[pointerId] |= edge;
-      return false;
+    MotionEvent mEvent;
+
+    @Override
+    public long getHistoricalEventTime(int pos) {
+      return mEvent.getHistoricalEventTime(pos);
     }
-    return (mEdgeDragsInProgress[pointerId] & edge) == 0 && absDelta > mTouchSlop;
-  }
 
-  /**
-   * Check if we've crossed a reasonable touch slop for the given child view.
-   * If the child cannot be dragged along the horizontal or vertical axis, motion
-   * along that axis will not count toward the slop check.
-   *
-   * @param child Child to check
-   * @param dx Motion since initial position along X axis
-   * @param dy Motion since initial position along Y axis
-   * @return true if the touch slop has been crossed
-   */
-  private boolean checkTouchSlop(View child, float dx, float dy) {
-    if (child == null) {
-      return false;
+    @Override
+    public float getHistoricalX(int pointerIndex, int pos) {
+      return mEvent.getHistoricalX(pointerIndex, pos);
     }
-    final boolean checkHorizontal = mCallback.getViewHorizontalDragRange(child) > 0;
-    final boolean checkVertical = mCallback.getViewVerticalDragRange(child) > 0;
 
-    if (checkHorizontal && checkVertical) {
-      return dx * dx + dy * dy > mTouchSlop * mTouchSlop;
-    } else if (checkHorizontal) {
-      return Math.abs(dx) > mTouchSlop;
-    } else if (checkVertical) {
-      return Math.abs(dy) > mTouchSlop;
+    @Override
+    public float getHistoricalY(int pointerIndex, int pos) {
+      return mEvent.getHistoricalY(pointerIndex, pos);
     }
-    return false;
   }
 
   /**
@@ -1324,13 +1087,7 @@ class ViewDragHelper {
    * @return true if the slop threshold has been crossed, false otherwise
    */
   public boolean checkTouchSlop(int directions) {
-    final int count = mInitialMotionX.length;
-    for (int i = 0; i < count; i++) {
-      if (checkTouchSlop(directions, i)) {
-        return true;
-      }
-    }
-    return false;
+    return mGesture.checkTouchSlop(directions);
   }
 
   /**
@@ -1349,24 +1106,7 @@ class ViewDragHelper {
    * @return true if the slop threshold has been crossed, false otherwise
    */
   public boolean checkTouchSlop(int directions, int pointerId) {
-    if (!isPointerDown(pointerId)) {
-      return false;
-    }
-
-    final boolean checkHorizontal = (directions & DIRECTION_HORIZONTAL) == DIRECTION_HORIZONTAL;
-    final boolean checkVertical = (directions & DIRECTION_VERTICAL) == DIRECTION_VERTICAL;
-
-    final float dx = mLastMotionX[pointerId] - mInitialMotionX[pointerId];
-    final float dy = mLastMotionY[pointerId] - mInitialMotionY[pointerId];
-
-    if (checkHorizontal && checkVertical) {
-      return dx * dx + dy * dy > mTouchSlop * mTouchSlop;
-    } else if (checkHorizontal) {
-      return Math.abs(dx) > mTouchSlop;
-    } else if (checkVertical) {
-      return Math.abs(dy) > mTouchSlop;
-    }
-    return false;
+    return mGesture.checkTouchSlop(directions, pointerId);
   }
 
   /**
@@ -1379,13 +1119,7 @@ class ViewDragHelper {
    * @return true if any of the edges specified were initially touched in the current gesture
    */
   public boolean isEdgeTouched(int edges) {
-    final int count = mInitialEdgesTouched.length;
-    for (int i = 0; i < count; i++) {
-      if (isEdgeTouched(edges, i)) {
-        return true;
-      }
-    }
-    return false;
+    return mGesture.isEdgeTouched(edges);
   }
 
   /**
@@ -1399,39 +1133,48 @@ class ViewDragHelper {
    * @return true if any of the edges specified were initially touched in the current gesture
    */
   public boolean isEdgeTouched(int edges, int pointerId) {
-    return isPointerDown(pointerId) && (mInitialEdgesTouched[pointerId] & edges) != 0;
+    return mGesture.isEdgeTouched(edges, pointerId);
   }
 
-  private void releaseViewForPointerUp() {
-    mVelocityTracker.computeCurrentVelocity(1000, mMaxVelocity);
-    final float xvel = clampMag(
-        VelocityTrackerCompat.getXVelocity(mVelocityTracker, mActivePointerId),
-        mMinVelocity, mMaxVelocity);
-    final float yvel = clampMag(
-        VelocityTrackerCompat.getYVelocity(mVelocityTracker, mActivePointerId),
-        mMinVelocity, mMaxVelocity);
-    dispatchViewReleased(xvel, yvel);
+  /**
+   * Return the current left position of the view, including its translation
+   * if views are moved by translation.
+   */
+  private int getViewLeft(View view) {
+    if (mUseTranslation) {
+      return view.getLeft() + (int) ViewCompat.getTranslationX(view);
+    } else {
+      return view.getLeft();
+    }
   }
 
-  private void dragTo(int left, int top, int dx, int dy) {
-    int clampedX = left;
-    int clampedY = top;
-    final int oldLeft = mCapturedView.getLeft();
-    final int oldTop = mCapturedView.getTop();
-    if (dx != 0) {
-      clampedX = mCallback.clampViewPositionHorizontal(mCapturedView, left, dx);
-      ViewCompat.offsetLeftAndRight(mCapturedView, clampedX - oldLeft);
-    }
-    if (dy != 0) {
-      clampedY = mCallback.clampViewPositionVertical(mCapturedView, top, dy);
-      ViewCompat.offsetTopAndBottom(mCapturedView, clampedY - oldTop);
+  /**
+   * Return the current top position of the view, including its translation
+   * if views are moved by translation.
+   */
+  private int getViewTop(View view) {
+    if (mUseTranslation) {
+      return view.getTop() + (int) ViewCompat.getTranslationY(view);
+    } else {
+      return view.getTop();
     }
+  }
 
-    if (dx != 0 || dy != 0) {
-      final int clampedDx = clampedX - oldLeft;
-      final int clampedDy = clampedY - oldTop;
-      mCallback.onViewPositionChanged(mCapturedView, clampedX, clampedY,
-          clampedDx, clampedDy);
+  private void offsetView(View view, int dx, int dy) {
+    if (mUseTranslation) {
+      if (dx != 0) {
+        ViewCompat.setTranslationX(view, ViewCompat.getTranslationX(view) + dx);
+      }
+      if (dy != 0) {
+        ViewCompat.setTranslationY(view, ViewCompat.getTranslationY(view) + dy);
+      }
+    } else {
+      if (dx != 0) {
+        ViewCompat.offsetLeftAndRight(view, dx);
+      }
+      if (dy != 0) {
+        ViewCompat.offsetTopAndBottom(view, dy);
+      }
     }
   }
 
@@ -1445,7 +1188,7 @@ class ViewDragHelper {
    * @return true if the captured view is under the given point, false otherwise
    */
   public boolean isCapturedViewUnder(int x, int y) {
-    return isViewUnder(mCapturedView, x, y);
+    return isViewUnder(mGesture.getCapturedTarget(), x, y);
   }
 
   /**
@@ -1461,10 +1204,12 @@ class ViewDragHelper {
     if (view == null) {
       return false;
     }
-    return x >= view.getLeft()
-        && x < view.getRight()
-        && y >= view.getTop()
-        && y < view.getBottom();
+    final int left = getViewLeft(view);
+    final int top = getViewTop(view);
+    return x >= left
+        && x < left + view.getWidth()
+        && y >= top
+        && y < top + view.getHeight();
   }
 
   /**
@@ -1479,32 +1224,22 @@ class ViewDragHelper {
     final int childCount = mParentView.getChildCount();
     for (int i = childCount - 1; i >= 0; i--) {
       final View child = mParentView.getChildAt(mCallback.getOrderedChildIndex(i));
-      if (x >= child.getLeft() && x < child.getRight()
-          && y >= child.getTop() && y < child.getBottom()) {
+      if (isViewUnder(child, x, y)) {
         return child;
       }
     }
     return null;
   }
 
-  private int getEdgesTouched(int x, int y) {
-    int result = 0;
-
-    if (x < mEdgeSize) result |= EDGE_LEFT;
-    if (y < mEdgeSize) result |= EDGE_TOP;
-    if (x > mParentView.getWidth() - mEdgeSize) result |= EDGE_RIGHT;
-    if (y > mParentView.getHeight() - mEdgeSize) result |= EDGE_BOTTOM;
-
-    return result;
-  }
-
-  private boolean isValidPointerForActionMove(int pointerId) {
-    if (!isPointerDown(pointerId)) {
-      Log.e(TAG, "Ignoring pointerId=" + pointerId + " because ACTION_DOWN was not received "
-          + "for this pointer before ACTION_MOVE. It likely happened because "
-          + " ViewDragHelper did not receive all the events in the event stream.");
-      return false;
-    }
-    return true;
+  /**
+   * Return the edges of the parent view that the given point falls into. Edges are
+   * reported regardless of whether tracking has been enabled for them.
+   *
+   * @param x X position to test in the parent's coordinate system
+   * @param y Y position to test in the parent's coordinate system
+   * @return A combination of edge flags, or 0 if the point is not near any edge
+   */
+  public int getEdgesTouched(int x, int y) {
+    return mGesture.getEdgesTouched(x, y);
   }
 }
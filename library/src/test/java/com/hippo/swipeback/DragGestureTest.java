@@ -0,0 +1,639 @@
+/*
+ * Copyright 2017 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hippo.swipeback;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class DragGestureTest {
+
+    private static final int TOUCH_SLOP = 8;
+    private static final int EDGE_SIZE = 20;
+
+    private static class Target {
+        int left;
+    }
+
+    private static class FakeHost implements DragGesture.Host<Target> {
+
+        final Target target = new Target();
+        DragGesture<Target> gesture;
+        boolean allowCapture;
+        int maxLeft = 1000;
+        int releasedLeft = -1;
+        int edgeDragsStarted;
+        int state;
+        float releasedXVelocity = Float.NaN;
+        int scheduledFrames;
+        boolean lockEdges;
+        int edgeLocks;
+        // Settle to it in onReleased if not negative
+        int settleTo = -1;
+        int reportedLeft = -1;
+        int scheduledIdles;
+        long time;
+
+        @Override
+        public int getWidth() {
+            return 1000;
+        }
+
+        @Override
+        public int getHeight() {
+            return 2000;
+        }
+
+        @Override
+        public Target findTargetUnder(int x, int y) {
+            return isTargetUnder(target, x, y) ? target : null;
+        }
+
+        @Override
+        public boolean isTargetUnder(Target target, int x, int y) {
+            return x >= target.left && x < target.left + 1000 && y >= 0 && y < 2000;
+        }
+
+        @Override
+        public int getLeft(Target target) {
+            return target.left;
+        }
+
+        @Override
+        public int getTop(Target target) {
+            return 0;
+        }
+
+        @Override
+        public int getHorizontalDragRange(Target target) {
+            return 1000;
+        }
+
+        @Override
+        public int getVerticalDragRange(Target target) {
+            return 0;
+        }
+
+        @Override
+        public int clampHorizontal(Target target, int left, int dx) {
+            return Math.max(0, Math.min(left, maxLeft));
+        }
+
+        @Override
+        public int clampVertical(Target target, int top, int dy) {
+            return 0;
+        }
+
+        @Override
+        public boolean tryCapture(Target target, int pointerId) {
+            return allowCapture;
+        }
+
+        @Override
+        public void onCaptured(Target target, int pointerId) {}
+
+        @Override
+        public void dragTarget(Target target, int left, int top, int dx, int dy) {
+            target.left += dx;
+        }
+
+        @Override
+        public void moveTarget(Target target, int dx, int dy) {
+            target.left += dx;
+        }
+
+        @Override
+        public void onPositionChanged(Target target, int left, int top, int dx, int dy) {
+            reportedLeft = left;
+        }
+
+        @Override
+        public void onReleased(Target target, float xvel, float yvel) {
+            releasedXVelocity = xvel;
+            releasedLeft = target.left;
+            if (settleTo >= 0) {
+                gesture.settleCapturedAt(settleTo, 0);
+            }
+        }
+
+        @Override
+        public void onDragStateChanged(int state) {
+            this.state = state;
+        }
+
+        @Override
+        public void onEdgeTouched(int edgeFlags, int pointerId) {}
+
+        @Override
+        public boolean onEdgeLock(int edgeFlags) {
+            if (lockEdges) {
+                edgeLocks++;
+            }
+            return lockEdges;
+        }
+
+        @Override
+        public void onEdgeDragStarted(int edgeFlags, int pointerId) {
+            edgeDragsStarted |= edgeFlags;
+            gesture.capture(target, pointerId);
+        }
+
+        @Override
+        public void scheduleDragFrame() {
+            scheduledFrames++;
+        }
+
+        @Override
+        public void cancelDragFrame() {}
+
+        @Override
+        public void scheduleIdle() {
+            scheduledIdles++;
+        }
+
+        @Override
+        public void cancelIdle() {}
+
+        @Override
+        public long currentTimeMillis() {
+            return time;
+        }
+    }
+
+    /**
+     * Moves linearly along the time of the host.
+     */
+    private static class FakeScroller implements DragGesture.Scroller {
+
+        private final FakeHost mHost;
+        private int mStartX;
+        private int mFinalX;
+        private int mCurrX;
+        private long mStartTime;
+        private int mDuration;
+        private boolean mFinished = true;
+
+        FakeScroller(FakeHost host) {
+            mHost = host;
+        }
+
+        @Override
+        public void startScroll(int startX, int startY, int dx, int dy, int duration) {
+            mStartX = startX;
+            mFinalX = startX + dx;
+            mCurrX = startX;
+            mStartTime = mHost.time;
+            mDuration = duration;
+            mFinished = false;
+        }
+
+        @Override
+        public void fling(int startX, int startY, int velocityX, int velocityY,
+                int minX, int maxX, int minY, int maxY) {
+            startScroll(startX, startY,
+                    Math.max(minX, Math.min(startX + velocityX / 10, maxX)) - startX, 0, 100);
+        }
+
+        @Override
+        public boolean computeScrollOffset() {
+            if (mFinished) {
+                return false;
+            }
+            final long elapsed = mHost.time - mStartTime;
+            if (elapsed >= mDuration) {
+                mCurrX = mFinalX;
+                mFinished = true;
+            } else {
+                mCurrX = mStartX + (int) ((mFinalX - mStartX) * elapsed / mDuration);
+            }
+            return true;
+        }
+
+        @Override
+        public int getCurrX() {
+            return mCurrX;
+        }
+
+        @Override
+        public int getCurrY() {
+            return 0;
+        }
+
+        @Override
+        public int getFinalX() {
+            return mFinalX;
+        }
+
+        @Override
+        public int getFinalY() {
+            return 0;
+        }
+
+        @Override
+        public void abortAnimation() {
+            mCurrX = mFinalX;
+            mFinished = true;
+        }
+    }
+
+    private static DragGesture<Target> newGesture(FakeHost host) {
+        final DragGesture<Target> gesture = new DragGesture<>(host, new FakeScroller(host),
+                TOUCH_SLOP, EDGE_SIZE, 50, 8000, 24);
+        host.gesture = gesture;
+        return gesture;
+    }
+
+    private static void setPair(TouchSamples samples, int action, int actionIndex,
+            float x0, float x1, long time) {
+        samples.reset(action, actionIndex, 2, 0);
+        samples.setPointerId(0, 0);
+        samples.setPointerId(1, 1);
+        samples.setTime(0, time);
+        samples.setPosition(0, 0, x0, 500);
+        samples.setPosition(0, 1, x1, 500);
+    }
+
+    /**
+     * Call {@link DragGesture#continueSettling(boolean)} every 16ms until it returns false.
+     *
+     * @return the number of frames
+     */
+    private static int settle(DragGesture<Target> gesture, FakeHost host) {
+        int frames = 0;
+        do {
+            host.time += 16;
+            frames++;
+        } while (gesture.continueSettling(false) && frames < 1000);
+        return frames;
+    }
+
+    @Test
+    public void edgeDragCapturesAndReleases() {
+        final FakeHost host = new FakeHost();
+        final DragGesture<Target> gesture = newGesture(host);
+        gesture.setEdgeTrackingEnabled(DragGesture.EDGE_LEFT);
+        final TouchSamples samples = new TouchSamples();
+
+        samples.set(TouchSamples.ACTION_DOWN, 0, 5, 500, 0);
+        gesture.processTouchEvent(samples);
+        assertTrue(gesture.isEdgeTouched(DragGesture.EDGE_LEFT));
+        assertEquals(DragGesture.STATE_IDLE, gesture.getDragState());
+
+        for (int i = 1; i <= 10; i++) {
+            samples.set(TouchSamples.ACTION_MOVE, 0, 5 + 20 * i, 500, 8 * i);
+            gesture.processTouchEvent(samples);
+        }
+        assertEquals(DragGesture.EDGE_LEFT, host.edgeDragsStarted);
+        assertEquals(DragGesture.STATE_DRAGGING, host.state);
+        assertTrue(host.target.left > 0);
+
+        samples.set(TouchSamples.ACTION_UP, 0, 205, 500, 88);
+        gesture.processTouchEvent(samples);
+        // 20px per 8ms
+        assertEquals(2500, host.releasedXVelocity, 100);
+        assertEquals(DragGesture.STATE_IDLE, host.state);
+        assertEquals(null, gesture.getCapturedTarget());
+    }
+
+    @Test
+    public void interceptPastSlop() {
+        final FakeHost host = new FakeHost();
+        host.allowCapture = true;
+        final DragGesture<Target> gesture = newGesture(host);
+        final TouchSamples samples = new TouchSamples();
+
+        samples.set(TouchSamples.ACTION_DOWN, 0, 500, 500, 0);
+        assertFalse(gesture.shouldInterceptTouchEvent(samples));
+        samples.set(TouchSamples.ACTION_MOVE, 0, 500 + TOUCH_SLOP, 500, 8);
+        assertFalse(gesture.shouldInterceptTouchEvent(samples));
+
+        // The slop is crossed by a historical sample
+        samples.reset(TouchSamples.ACTION_MOVE, 0, 1, 1);
+        samples.setPointerId(0, 0);
+        samples.setTime(0, 12);
+        samples.setPosition(0, 0, 520, 500);
+        samples.setTime(1, 16);
+        samples.setPosition(1, 0, 530, 500);
+        assertTrue(gesture.shouldInterceptTouchEvent(samples));
+        assertEquals(DragGesture.STATE_DRAGGING, gesture.getDragState());
+    }
+
+    @Test
+    public void historyReadOnlyForTrackedPointers() {
+        final FakeHost host = new FakeHost();
+        final DragGesture<Target> gesture = newGesture(host);
+        gesture.setEdgeTrackingEnabled(DragGesture.EDGE_LEFT);
+        gesture.setTouchPredictionEnabled(true);
+        final TouchSamples samples = new TouchSamples();
+
+        samples.set(TouchSamples.ACTION_DOWN, 0, 5, 500, 0);
+        gesture.processTouchEvent(samples);
+        for (int i = 1; i <= 5; i++) {
+            samples.set(TouchSamples.ACTION_MOVE, 0, 5 + 20 * i, 500, 8 * i);
+            gesture.processTouchEvent(samples);
+        }
+        assertEquals(DragGesture.STATE_DRAGGING, host.state);
+        // Neither on an edge nor dragging
+        setPair(samples, TouchSamples.ACTION_POINTER_DOWN, 1, 105, 500, 48);
+        gesture.processTouchEvent(samples);
+
+        final int[] reads = new int[2];
+        samples.reset(TouchSamples.ACTION_MOVE, 0, 2, 2);
+        samples.setPointerId(0, 0);
+        samples.setPointerId(1, 1);
+        samples.setHistorySource(new TouchSamples.HistorySource() {
+            @Override
+            public long getHistoricalEventTime(int pos) {
+                return 56 + 8 * pos;
+            }
+
+            @Override
+            public float getHistoricalX(int pointerIndex, int pos) {
+                reads[pointerIndex]++;
+                return pointerIndex == 0 ? 125 + 20 * pos : 500;
+            }
+
+            @Override
+            public float getHistoricalY(int pointerIndex, int pos) {
+                reads[pointerIndex]++;
+                return 500;
+            }
+        });
+        samples.setTime(2, 72);
+        samples.setPosition(2, 0, 165, 500);
+        samples.setPosition(2, 1, 500, 500);
+        gesture.processTouchEvent(samples);
+
+        // Read once, although both velocity and prediction use them
+        assertEquals(4, reads[0]);
+        assertEquals(0, reads[1]);
+        assertEquals(125, samples.getHistoricalX(0, 0), 0);
+    }
+
+    @Test
+    public void coalescedDragAppliedOnFrame() {
+        final FakeHost host = new FakeHost();
+        final DragGesture<Target> gesture = newGesture(host);
+        gesture.setDragCoalescingEnabled(true);
+        final TouchSamples samples = new TouchSamples();
+
+        samples.set(TouchSamples.ACTION_DOWN, 0, 100, 500, 0);
+        gesture.processTouchEvent(samples);
+        gesture.capture(host.target, 0);
+        samples.set(TouchSamples.ACTION_MOVE, 0, 110, 500, 4);
+        gesture.processTouchEvent(samples);
+        samples.set(TouchSamples.ACTION_MOVE, 0, 130, 500, 8);
+        gesture.processTouchEvent(samples);
+        assertEquals(0, host.target.left);
+        assertEquals(1, host.scheduledFrames);
+
+        gesture.onDragFrame();
+        assertEquals(30, host.target.left);
+    }
+
+    @Test
+    public void ignorePointersWithoutDown() {
+        final FakeHost host = new FakeHost();
+        host.allowCapture = true;
+        final DragGesture<Target> gesture = newGesture(host);
+        final TouchSamples samples = new TouchSamples();
+
+        samples.set(TouchSamples.ACTION_MOVE, 3, 500, 500, 0);
+        assertFalse(gesture.shouldInterceptTouchEvent(samples));
+        gesture.processTouchEvent(samples);
+        samples.set(TouchSamples.ACTION_POINTER_UP, 3, 500, 500, 8);
+        gesture.processTouchEvent(samples);
+        assertEquals(DragGesture.STATE_IDLE, gesture.getDragState());
+        assertFalse(gesture.isPointerDown(3));
+    }
+
+    /**
+     * Drag right by 10px every 8ms from x = 100 and release.
+     *
+     * @return the max left while dragging
+     */
+    private static int dragRight(DragGesture<Target> gesture, FakeHost host, int moves) {
+        final TouchSamples samples = new TouchSamples();
+        samples.set(TouchSamples.ACTION_DOWN, 0, 100, 500, 0);
+        gesture.processTouchEvent(samples);
+        gesture.capture(host.target, 0);
+        int maxLeft = 0;
+        for (int i = 1; i <= moves; i++) {
+            samples.set(TouchSamples.ACTION_MOVE, 0, 100 + 10 * i, 500, 8 * i);
+            gesture.processTouchEvent(samples);
+            maxLeft = Math.max(maxLeft, host.target.left);
+        }
+        samples.set(TouchSamples.ACTION_UP, 0, 100 + 10 * moves, 500, 8 * moves);
+        gesture.processTouchEvent(samples);
+        return maxLeft;
+    }
+
+    @Test
+    public void predictionTakenBackOnRelease() {
+        final FakeHost host = new FakeHost();
+        host.allowCapture = true;
+        final DragGesture<Target> gesture = newGesture(host);
+        gesture.setTouchPredictionEnabled(true);
+
+        final int maxLeft = dragRight(gesture, host, 20);
+        // Ahead of the pointer while dragging, back to the pointer on release
+        assertTrue(maxLeft > 200);
+        assertEquals(200, host.releasedLeft);
+    }
+
+    @Test
+    public void predictionOff() {
+        final FakeHost host = new FakeHost();
+        host.allowCapture = true;
+        final DragGesture<Target> gesture = newGesture(host);
+
+        final int maxLeft = dragRight(gesture, host, 20);
+        assertEquals(200, maxLeft);
+        assertEquals(200, host.releasedLeft);
+    }
+
+    @Test
+    public void predictionAgainstClamp() {
+        final FakeHost host = new FakeHost();
+        host.allowCapture = true;
+        host.maxLeft = 150;
+        final DragGesture<Target> gesture = newGesture(host);
+        gesture.setTouchPredictionEnabled(true);
+
+        final int maxLeft = dragRight(gesture, host, 20);
+        assertEquals(150, maxLeft);
+        // The clamped part of the prediction is never applied, so nothing is taken back
+        assertEquals(150, host.releasedLeft);
+    }
+
+    @Test
+    public void pointerUpHandsOffToAnotherPointer() {
+        final FakeHost host = new FakeHost();
+        host.allowCapture = true;
+        final DragGesture<Target> gesture = newGesture(host);
+        final TouchSamples samples = new TouchSamples();
+
+        samples.set(TouchSamples.ACTION_DOWN, 0, 100, 500, 0);
+        gesture.processTouchEvent(samples);
+        assertEquals(0, gesture.getActivePointerId());
+        setPair(samples, TouchSamples.ACTION_POINTER_DOWN, 1, 100, 300, 8);
+        gesture.processTouchEvent(samples);
+        assertEquals(1, gesture.getActivePointerId());
+
+        setPair(samples, TouchSamples.ACTION_POINTER_UP, 1, 100, 300, 16);
+        gesture.processTouchEvent(samples);
+        assertEquals(0, gesture.getActivePointerId());
+        assertEquals(DragGesture.STATE_DRAGGING, gesture.getDragState());
+        assertEquals(-1, host.releasedLeft);
+
+        samples.set(TouchSamples.ACTION_MOVE, 0, 120, 500, 24);
+        gesture.processTouchEvent(samples);
+        assertEquals(20, host.target.left);
+    }
+
+    @Test
+    public void cancelReleasesWithoutVelocity() {
+        final FakeHost host = new FakeHost();
+        host.allowCapture = true;
+        final DragGesture<Target> gesture = newGesture(host);
+        final TouchSamples samples = new TouchSamples();
+
+        samples.set(TouchSamples.ACTION_DOWN, 0, 100, 500, 0);
+        gesture.processTouchEvent(samples);
+        for (int i = 1; i <= 10; i++) {
+            samples.set(TouchSamples.ACTION_MOVE, 0, 100 + 30 * i, 500, 8 * i);
+            gesture.processTouchEvent(samples);
+        }
+        samples.set(TouchSamples.ACTION_CANCEL, 0, 400, 500, 88);
+        gesture.processTouchEvent(samples);
+        assertEquals(0, host.releasedXVelocity, 0);
+        assertEquals(300, host.releasedLeft);
+        assertEquals(DragGesture.STATE_IDLE, host.state);
+    }
+
+    @Test
+    public void edgeLock() {
+        for (int i = 0; i < 2; i++) {
+            final FakeHost host = new FakeHost();
+            host.lockEdges = i == 0;
+            final DragGesture<Target> gesture = newGesture(host);
+            gesture.setEdgeTrackingEnabled(DragGesture.EDGE_LEFT);
+            final TouchSamples samples = new TouchSamples();
+
+            samples.set(TouchSamples.ACTION_DOWN, 0, 5, 500, 0);
+            gesture.processTouchEvent(samples);
+            // Mostly vertical
+            samples.set(TouchSamples.ACTION_MOVE, 0, 11, 540, 8);
+            gesture.processTouchEvent(samples);
+            samples.set(TouchSamples.ACTION_MOVE, 0, 105, 540, 16);
+            gesture.processTouchEvent(samples);
+
+            if (host.lockEdges) {
+                assertEquals(1, host.edgeLocks);
+                assertEquals(0, host.edgeDragsStarted);
+            } else {
+                assertEquals(DragGesture.EDGE_LEFT, host.edgeDragsStarted);
+            }
+        }
+    }
+
+    @Test
+    public void catchSettlingTarget() {
+        final FakeHost host = new FakeHost();
+        host.allowCapture = true;
+        final DragGesture<Target> gesture = newGesture(host);
+        final TouchSamples samples = new TouchSamples();
+
+        assertTrue(gesture.smoothSlideTo(host.target, 500, 0));
+        assertEquals(DragGesture.STATE_SETTLING, gesture.getDragState());
+        host.time += 16;
+        assertTrue(gesture.continueSettling(false));
+        final int left = host.target.left;
+        assertTrue(left > 0);
+
+        samples.set(TouchSamples.ACTION_DOWN, 0, left + 10, 500, 16);
+        assertTrue(gesture.shouldInterceptTouchEvent(samples));
+        assertEquals(DragGesture.STATE_DRAGGING, gesture.getDragState());
+        assertEquals(0, gesture.getActivePointerId());
+
+        host.time += 16;
+        assertFalse(gesture.continueSettling(false));
+        assertEquals(left, host.target.left);
+    }
+
+    @Test
+    public void scrollerSettle() {
+        final FakeHost host = new FakeHost();
+        host.allowCapture = true;
+        host.settleTo = 500;
+        final DragGesture<Target> gesture = newGesture(host);
+
+        dragRight(gesture, host, 10);
+        assertEquals(DragGesture.STATE_SETTLING, host.state);
+        final int frames = settle(gesture, host);
+        assertTrue(frames <= DragGesture.MAX_SETTLE_DURATION / 16 + 2);
+        assertEquals(500, host.target.left);
+        assertEquals(500, host.reportedLeft);
+        assertEquals(DragGesture.STATE_IDLE, host.state);
+        assertEquals(null, gesture.getCapturedTarget());
+    }
+
+    @Test
+    public void springSettle() {
+        final FakeHost host = new FakeHost();
+        host.allowCapture = true;
+        host.settleTo = 500;
+        final DragGesture<Target> gesture = newGesture(host);
+        gesture.setSettleMode(DragGesture.SETTLE_SPRING);
+        gesture.setSpringDuration(160);
+
+        dragRight(gesture, host, 10);
+        assertEquals(DragGesture.STATE_SETTLING, host.state);
+        final int frames = settle(gesture, host);
+        assertTrue(frames <= 160 / 16 + 1);
+        assertEquals(500, host.target.left);
+        assertEquals(DragGesture.STATE_IDLE, host.state);
+    }
+
+    @Test
+    public void deferredIdle() {
+        final FakeHost host = new FakeHost();
+        final DragGesture<Target> gesture = newGesture(host);
+
+        gesture.smoothSlideTo(host.target, 500, 0);
+        host.time += 1000;
+        assertTrue(gesture.continueSettling(true));
+        assertEquals(500, host.target.left);
+        assertEquals(1, host.scheduledIdles);
+        assertEquals(DragGesture.STATE_SETTLING, gesture.getDragState());
+    }
+
+    @Test
+    public void abortSnapsToFinal() {
+        final FakeHost host = new FakeHost();
+        final DragGesture<Target> gesture = newGesture(host);
+        gesture.setSettleMode(DragGesture.SETTLE_SPRING);
+
+        gesture.smoothSlideTo(host.target, 500, 0);
+        gesture.abort();
+        assertEquals(500, host.reportedLeft);
+        assertEquals(DragGesture.STATE_IDLE, host.state);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2017 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hippo.swipeback;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.junit.Test;
+
+public class ExecutorSwipeListenerTest {
+
+    private static class ManualExecutor implements Executor {
+
+        final List<Runnable> tasks = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        void runAll() {
+            while (!tasks.isEmpty()) {
+                tasks.remove(0).run();
+            }
+        }
+    }
+
+    private static class RecordingListener implements SwipeEventListener {
+
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void onSwipe(float percent) {
+            events.add("swipe " + percent);
+        }
+
+        @Override
+        public void onStateChange(int edge, int state) {
+            events.add("state " + state);
+        }
+
+        @Override
+        public void onSwipeOverThreshold() {
+            events.add("threshold");
+        }
+
+        @Override
+        public void onFinish() {
+            events.add("finish");
+        }
+    }
+
+    @Test
+    public void coalesceProgress() {
+        final ManualExecutor executor = new ManualExecutor();
+        final RecordingListener delegate = new RecordingListener();
+        final ExecutorSwipeListener listener = new ExecutorSwipeListener(delegate, executor);
+
+        listener.onStateChange(1, 1);
+        listener.onSwipe(0.1f);
+        listener.onSwipe(0.2f);
+        listener.onSwipeOverThreshold();
+        listener.onSwipe(0.5f);
+        listener.onStateChange(1, 2);
+        listener.onSwipe(1.0f);
+        listener.onFinish();
+        // Only one drain task is scheduled
+        assertEquals(1, executor.tasks.size());
+        assertEquals(0, delegate.events.size());
+
+        executor.runAll();
+        assertEquals("[state 1, swipe 0.2, threshold, swipe 0.5, state 2, swipe 1.0, finish]",
+                delegate.events.toString());
+    }
+
+    @Test
+    public void deliverInOrder() {
+        final ManualExecutor executor = new ManualExecutor();
+        final RecordingListener delegate = new RecordingListener();
+        final ExecutorSwipeListener listener = new ExecutorSwipeListener(delegate, executor);
+
+        listener.onSwipe(0.1f);
+        executor.runAll();
+        listener.onSwipe(0.2f);
+        listener.onStateChange(1, 0);
+        executor.runAll();
+        assertEquals("[swipe 0.1, swipe 0.2, state 0]", delegate.events.toString());
+    }
+}
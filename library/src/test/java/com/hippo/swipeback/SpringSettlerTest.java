@@ -0,0 +1,72 @@
+/*
+ * Copyright 2017 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hippo.swipeback;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class SpringSettlerTest {
+
+    @Test
+    public void finishWithinDuration() {
+        final SpringSettler settler = new SpringSettler();
+        settler.start(0, 0, 1000, 0, 0, 0, 0, 300);
+        assertTrue(settler.computeOffset(100));
+        assertFalse(settler.computeOffset(300));
+        assertEquals(1000, settler.getCurrX());
+        assertTrue(settler.isFinished());
+    }
+
+    @Test
+    public void monotonicWithoutPassingFinal() {
+        final SpringSettler settler = new SpringSettler();
+        // Released fast toward the final position
+        settler.start(500, 0, 0, 0, -20000, 0, 0, 300);
+        int last = 500;
+        for (int t = 0; t <= 300; t += 4) {
+            settler.computeOffset(t);
+            final int x = settler.getCurrX();
+            assertTrue(x <= last);
+            assertTrue(x >= 0);
+            last = x;
+        }
+        assertEquals(0, settler.getCurrX());
+    }
+
+    @Test
+    public void velocityContinuity() {
+        final SpringSettler settler = new SpringSettler();
+        settler.start(0, 0, 1000, 0, 3000, 0, 0, 300);
+        settler.computeOffset(1);
+        // Initial velocity 3px/ms should dominate the first millisecond
+        assertEquals(3, settler.getCurrX() - 0, 1);
+    }
+
+    @Test
+    public void abortSnapsToFinal() {
+        final SpringSettler settler = new SpringSettler();
+        settler.start(0, 10, 100, 20, 0, 0, 0, 300);
+        settler.abort();
+        assertEquals(100, settler.getCurrX());
+        assertEquals(20, settler.getCurrY());
+        assertFalse(settler.computeOffset(10));
+    }
+}
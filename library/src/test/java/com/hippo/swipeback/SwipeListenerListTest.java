@@ -0,0 +1,181 @@
+/*
+ * Copyright 2017 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hippo.swipeback;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class SwipeListenerListTest {
+
+    private static class CountingListener implements SwipeEventListener {
+
+        int swipe;
+        int state;
+        int threshold;
+        int finish;
+
+        @Override
+        public void onSwipe(float percent) {
+            swipe++;
+        }
+
+        @Override
+        public void onStateChange(int edge, int state) {
+            this.state++;
+        }
+
+        @Override
+        public void onSwipeOverThreshold() {
+            threshold++;
+        }
+
+        @Override
+        public void onFinish() {
+            finish++;
+        }
+    }
+
+    @Test
+    public void dispatchByMask() {
+        final SwipeListenerList list = new SwipeListenerList();
+        final CountingListener all = new CountingListener();
+        final CountingListener finish = new CountingListener();
+        list.add(all, SwipeListenerList.EVENT_ALL);
+        list.add(finish, SwipeListenerList.EVENT_FINISH);
+
+        list.dispatchSwipe(0.5f);
+        list.dispatchStateChange(1, 1);
+        list.dispatchSwipeOverThreshold();
+        list.dispatchFinish();
+
+        assertEquals(1, all.swipe);
+        assertEquals(1, all.state);
+        assertEquals(1, all.threshold);
+        assertEquals(1, all.finish);
+        assertEquals(0, finish.swipe);
+        assertEquals(0, finish.state);
+        assertEquals(0, finish.threshold);
+        assertEquals(1, finish.finish);
+    }
+
+    @Test
+    public void removeUpdatesMask() {
+        final SwipeListenerList list = new SwipeListenerList();
+        final CountingListener swipe = new CountingListener();
+        final CountingListener state = new CountingListener();
+        list.add(swipe, SwipeListenerList.EVENT_SWIPE);
+        list.add(state, SwipeListenerList.EVENT_STATE);
+        assertTrue(list.wants(SwipeListenerList.EVENT_SWIPE));
+
+        assertTrue(list.remove(swipe));
+        assertFalse(list.remove(swipe));
+        assertFalse(list.wants(SwipeListenerList.EVENT_SWIPE));
+        assertTrue(list.wants(SwipeListenerList.EVENT_STATE));
+        assertEquals(1, list.size());
+    }
+
+    @Test
+    public void removeDuringDispatch() {
+        final SwipeListenerList list = new SwipeListenerList();
+        final CountingListener second = new CountingListener();
+        list.add(new CountingListener() {
+            @Override
+            public void onSwipe(float percent) {
+                list.remove(this);
+                list.remove(second);
+            }
+        }, SwipeListenerList.EVENT_ALL);
+        list.add(second, SwipeListenerList.EVENT_ALL);
+
+        // The snapshot is still dispatched
+        list.dispatchSwipe(0.5f);
+        assertEquals(1, second.swipe);
+        assertEquals(0, list.size());
+
+        list.dispatchSwipe(0.6f);
+        assertEquals(1, second.swipe);
+    }
+
+    private static class RecordingListener extends CountingListener {
+
+        float last = Float.NaN;
+
+        @Override
+        public void onSwipe(float percent) {
+            super.onSwipe(percent);
+            last = percent;
+        }
+    }
+
+    @Test
+    public void progressStep() {
+        final SwipeListenerList list = new SwipeListenerList();
+        final RecordingListener listener = new RecordingListener();
+        list.add(listener, SwipeListenerList.EVENT_SWIPE, 0.1f, false);
+
+        list.dispatchSwipe(0.01f);
+        list.dispatchSwipe(0.05f);
+        list.dispatchSwipe(0.09f);
+        assertEquals(1, listener.swipe);
+        list.dispatchSwipe(0.12f);
+        assertEquals(2, listener.swipe);
+        list.dispatchSwipe(0.15f);
+        assertEquals(2, listener.swipe);
+
+        // Exact final value
+        list.flushSwipe(0.15f);
+        assertEquals(3, listener.swipe);
+        assertEquals(0.15f, listener.last, 0);
+        list.flushSwipe(0.15f);
+        assertEquals(3, listener.swipe);
+    }
+
+    @Test
+    public void oncePerFrame() {
+        final SwipeListenerList list = new SwipeListenerList();
+        final RecordingListener listener = new RecordingListener();
+        list.add(listener, SwipeListenerList.EVENT_SWIPE, 0, true);
+
+        assertTrue(list.dispatchSwipe(0.1f));
+        assertTrue(list.dispatchSwipe(0.2f));
+        assertEquals(0, listener.swipe);
+        list.dispatchSwipeFrame(0.3f);
+        assertEquals(1, listener.swipe);
+        assertEquals(0.3f, listener.last, 0);
+        list.dispatchSwipeFrame(0.4f);
+        assertEquals(1, listener.swipe);
+
+        list.dispatchSwipe(0.5f);
+        list.flushSwipe(0.5f);
+        assertEquals(2, listener.swipe);
+        list.dispatchSwipeFrame(0.5f);
+        assertEquals(2, listener.swipe);
+    }
+
+    @Test
+    public void flushWithoutProgress() {
+        final SwipeListenerList list = new SwipeListenerList();
+        final RecordingListener listener = new RecordingListener();
+        list.add(listener, SwipeListenerList.EVENT_SWIPE, 0.1f, false);
+        list.flushSwipe(0);
+        assertEquals(0, listener.swipe);
+    }
+}
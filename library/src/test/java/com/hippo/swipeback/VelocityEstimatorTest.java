@@ -0,0 +1,109 @@
+/*
+ * Copyright 2017 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hippo.swipeback;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class VelocityEstimatorTest {
+
+    private static final float DELTA = 0.01f;
+
+    @Test
+    public void constantVelocity() {
+        final VelocityEstimator estimator = new VelocityEstimator(2);
+        for (int i = 0; i < 10; i++) {
+            estimator.addSample(0, i * 8, i * 4, 100 - i * 2);
+        }
+        estimator.computeVelocity(0);
+        assertEquals(500, estimator.getXVelocity(), DELTA);
+        assertEquals(-250, estimator.getYVelocity(), DELTA);
+    }
+
+    @Test
+    public void notEnoughSamples() {
+        final VelocityEstimator estimator = new VelocityEstimator(1);
+        estimator.computeVelocity(0);
+        assertEquals(0, estimator.getXVelocity(), DELTA);
+
+        estimator.addSample(0, 0, 0, 0);
+        estimator.computeVelocity(0);
+        assertEquals(0, estimator.getXVelocity(), DELTA);
+    }
+
+    @Test
+    public void samplesOutOfWindowIgnored() {
+        final VelocityEstimator estimator = new VelocityEstimator(1);
+        estimator.setTimeWindow(50);
+        // Fast move long ago, then slow move
+        estimator.addSample(0, 0, 0, 0);
+        estimator.addSample(0, 10, 1000, 0);
+        for (int i = 0; i <= 5; i++) {
+            estimator.addSample(0, 200 + i * 10, 1000 + i, 0);
+        }
+        estimator.computeVelocity(0);
+        assertEquals(100, estimator.getXVelocity(), DELTA);
+    }
+
+    @Test
+    public void stoppedPointer() {
+        final VelocityEstimator estimator = new VelocityEstimator(1);
+        for (int i = 0; i < 5; i++) {
+            estimator.addSample(0, i * 10, i * 10, 0);
+        }
+        // Lift after a long pause
+        estimator.addSample(0, 500, 40, 0);
+        estimator.computeVelocity(0);
+        assertEquals(0, estimator.getXVelocity(), DELTA);
+    }
+
+    @Test
+    public void ringBufferWraps() {
+        final VelocityEstimator estimator = new VelocityEstimator(1);
+        for (int i = 0; i < 100; i++) {
+            estimator.addSample(0, i * 4, i * 2, 0);
+        }
+        estimator.computeVelocity(0);
+        assertEquals(500, estimator.getXVelocity(), DELTA);
+    }
+
+    @Test
+    public void pointersIndependent() {
+        final VelocityEstimator estimator = new VelocityEstimator(2);
+        for (int i = 0; i < 5; i++) {
+            estimator.addSample(0, i * 10, i * 10, 0);
+            estimator.addSample(1, i * 10, -i * 20, 0);
+        }
+        estimator.clear(0);
+        estimator.computeVelocity(0);
+        assertEquals(0, estimator.getXVelocity(), DELTA);
+        estimator.computeVelocity(1);
+        assertEquals(-2000, estimator.getXVelocity(), DELTA);
+    }
+
+    @Test
+    public void sameTimeReplaced() {
+        final VelocityEstimator estimator = new VelocityEstimator(1);
+        estimator.addSample(0, 0, 0, 0);
+        estimator.addSample(0, 10, 5, 0);
+        estimator.addSample(0, 10, 10, 0);
+        estimator.computeVelocity(0);
+        assertEquals(1000, estimator.getXVelocity(), DELTA);
+    }
+}